@@ -1,38 +1,42 @@
 package org.lsc.plugins.connectors.fusiondirectory;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.lsc.LscDatasets;
 import org.lsc.beans.IBean;
 import org.lsc.configuration.ConnectionType;
-import org.lsc.configuration.ValuesType;
 import org.lsc.exception.LscServiceCommunicationException;
+import org.lsc.exception.LscServiceConfigurationException;
 import org.lsc.exception.LscServiceException;
-import org.lsc.plugins.connectors.fusiondirectory.generated.Attribute;
-import org.lsc.plugins.connectors.fusiondirectory.generated.Attributes;
-import org.lsc.plugins.connectors.fusiondirectory.generated.AttributesTab;
+import org.lsc.plugins.connectors.fusiondirectory.FusionDirectoryAttributes.MappedAttribute;
+import org.lsc.plugins.connectors.fusiondirectory.generated.Partition;
 import org.lsc.service.IService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-
 public abstract class FusionDirectoryAbstractService implements IService {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(FusionDirectoryAbstractService.class);
 	protected static final String DN = "dn";
+	protected static final String BASE = "base";
+	private static final String DETAIL_MODE_TABS = "tabs";
+	private static final String DETAIL_MODE_LDAP_ATTRS = "ldapAttrs";
 	protected FusionDirectoryDao dao;
 	protected Class<IBean> beanClass;
 
@@ -44,11 +48,36 @@ public abstract class FusionDirectoryAbstractService implements IService {
 	protected Optional<String> oneFilter;
 	protected Optional<String> cleanFilter;
 	protected Optional<String> template;
-	protected Attributes attributesSettings;
+	protected FusionDirectoryAttributes attributes;
+	protected int tabConcurrency;
+	// Read details from LDAP attributes in one request instead of reading tabs
+	protected boolean ldapAttributesDetails;
+	protected List<Partition> partitions = new ArrayList<>();
+	protected int partitionConcurrency = 1;
+	// Bytes of a listing held in memory before it is moved to files in spillDirectory, 0 for no limit
+	protected long listMemoryBudget;
+	protected Path spillDirectory;
+	// Prometheus text file the connection metrics are written to on close
+	protected Optional<String> metricsFile = Optional.empty();
+	// Listings which may have files, deleted when the next listing starts or on close
+	private final List<FusionDirectoryPivotMap> listings = new ArrayList<>();
+	private final AtomicBoolean daoReleased = new AtomicBoolean();
+
+	private FusionDirectoryFilterTemplate oneFilterTemplate;
+	private FusionDirectoryFilterTemplate cleanFilterTemplate;
+	// Default lookup filter: (&filter(|(pivot=value)...))
+	private String pivotAssertion;
+	private String pivotFilterStart;
+	private String pivotFilterEnd;
+	// Pivot value -> dn of the objects recently listed, found or created, to write them without searching
+	protected Map<String, String> dnCache = newDnCache(0);
+	// Send the attribute deletions of an object at once instead of one after the other
+	protected boolean concurrentDeletes;
 
 	@Override
 	public Map<String, LscDatasets> getListPivots() throws LscServiceException {
 		try {
+			closeListings();
 			return this.getList();
 		} catch (Exception e) {
 			LOGGER.error(String.format("Error while getting pivot list (%s)", e));
@@ -57,50 +86,197 @@ public abstract class FusionDirectoryAbstractService implements IService {
 		}
 	}
 	protected Map<String, LscDatasets> getList() throws LscServiceException {
-		return getList(allFilter.isPresent() ? allFilter : filter);
+		return getAllList(getAllFilter());
 	}
-	private Map<String, LscDatasets> getList(Optional<String> computedFilter) throws LscServiceException {
-		Map<String, LscDatasets> resources = new LinkedHashMap<>();
-		ObjectNode root = dao.getList(entity, base, pivot, computedFilter);
-		if (root != null) {
-			Iterator<Map.Entry<String, JsonNode>> iter = root.fields();
-			while (iter.hasNext()) {
-				Map.Entry<String, JsonNode> entry = iter.next();
-				Iterator<Map.Entry<String, JsonNode>> iter2 = entry.getValue().fields();
-				while (iter2.hasNext()) {
-					Map.Entry<String, JsonNode> entry2 = iter2.next();
-					String pivotValue = ((ArrayNode) entry2.getValue()).get(0).textValue();
-					LscDatasets datasets = new LscDatasets();
-					datasets.put(DN, entry.getKey());
-					datasets.put(entry2.getKey(), pivotValue);
-					resources.put(pivotValue, datasets);
+
+	protected Optional<String> getAllFilter() {
+		return allFilter.isPresent() ? allFilter : filter;
+	}
+	/**
+	 * List all the objects matching the filter, one request per partition when partitions are set.
+	 */
+	protected Map<String, LscDatasets> getAllList(Optional<String> computedFilter) throws LscServiceException {
+		return mergePartitions(listPartitions(computedFilter, (partitionBase, partitionFilter) -> {
+			FusionDirectoryPivotMap resources = newPivotMap();
+			dao.getList(entity, partitionBase, pivot, partitionFilter, (dn, pivotValue) -> {
+				if (pivotValue == null) {
+					LOGGER.debug(String.format("No pivot value for %s, ignored", dn));
+					return;
 				}
+				resources.put(pivotValue, dn);
+				dnCache.put(pivotValue, dn);
+			});
+			return resources;
+		}));
+	}
+
+	/**
+	 * A new map for a listing, moved to files above listMemoryBudget.
+	 */
+	protected FusionDirectoryPivotMap newPivotMap() {
+		FusionDirectoryPivotMap resources = new FusionDirectoryPivotMap(getPivotName(), listMemoryBudget,
+				spillDirectory);
+		if (listMemoryBudget > 0) {
+			synchronized (listings) {
+				listings.add(resources);
 			}
 		}
 		return resources;
+	}
 
+	/**
+	 * Write the metrics of the connection to metricsFile, when set.
+	 */
+	protected void writeMetrics() {
+		if (dao != null && metricsFile.isPresent()) {
+			try {
+				dao.getMetrics().write(Paths.get(metricsFile.get()));
+			} catch (IOException | RuntimeException e) {
+				LOGGER.error(String.format("Cannot write metrics to %s (%s)", metricsFile.get(), e));
+			}
+		}
 	}
 
-	protected Optional<Entry<String, LscDatasets>> findFirstByPivots(LscDatasets pivots, boolean clean)
+	/**
+	 * Give the shared DAO back, the last service using it logs out.
+	 */
+	protected void releaseDao() {
+		if (dao != null && daoReleased.compareAndSet(false, true)) {
+			FusionDirectoryDaoRegistry.release(dao);
+		}
+	}
+
+	/**
+	 * Delete the files of the previous listings.
+	 */
+	protected void closeListings() {
+		synchronized (listings) {
+			listings.forEach(FusionDirectoryPivotMap::close);
+			listings.clear();
+		}
+	}
+
+	/**
+	 * Run a listing for each partition, up to partitionConcurrency at once, and return their
+	 * results in partition order. Without partitions, the listing runs once on the service base.
+	 */
+	protected <T> List<T> listPartitions(Optional<String> computedFilter, PartitionListing<T> listing)
 			throws LscServiceException {
-		Optional<String> computedFilter = clean ? cleanFilter : oneFilter;
-		if (computedFilter.isPresent()) {
-			for (String somePivot : pivots.getAttributesNames()) {
-				computedFilter = Optional.of(Pattern.compile("\\{" + somePivot + "\\}", Pattern.CASE_INSENSITIVE)
-						.matcher(computedFilter.get())
-						.replaceAll(Matcher.quoteReplacement(pivots.getValueForFilter(somePivot.toLowerCase()))));
+		if (partitions.isEmpty()) {
+			return Collections.singletonList(listing.list(base, computedFilter));
+		}
+		Semaphore permits = new Semaphore(partitionConcurrency);
+		List<Future<T>> pendingListings = new ArrayList<>();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (Partition partition : partitions) {
+				Optional<String> partitionBase = getStringParameter(partition.getBase());
+				Optional<String> partitionFilter = getStringParameter(partition.getFilter());
+				Optional<String> listingFilter = computedFilter.isPresent() && partitionFilter.isPresent()
+						? Optional.of("(&" + computedFilter.get() + partitionFilter.get() + ")")
+						: computedFilter.isPresent() ? computedFilter : partitionFilter;
+				pendingListings.add(executor.submit(() -> {
+					permits.acquire();
+					try {
+						return listing.list(partitionBase.isPresent() ? partitionBase : base, listingFilter);
+					} finally {
+						permits.release();
+					}
+				}));
+			}
+			List<T> results = new ArrayList<>();
+			try {
+				for (Future<T> pendingListing : pendingListings) {
+					results.add(FusionDirectoryDao.await(pendingListing));
+				}
+			} catch (LscServiceException | RuntimeException e) {
+				// Cancel the other listings here, closing the executor waits for them
+				pendingListings.forEach(pendingListing -> pendingListing.cancel(true));
+				throw e;
+			}
+			return results;
+		}
+	}
+
+	/**
+	 * Merge the objects listed in each partition, reporting pivot values found in several partitions.
+	 */
+	protected Map<String, LscDatasets> mergePartitions(List<Map<String, LscDatasets>> partitionResources) {
+		if (partitionResources.size() == 1) {
+			return partitionResources.get(0);
+		}
+		Map<String, LscDatasets> resources = newPivotMap();
+		for (Map<String, LscDatasets> someResources : partitionResources) {
+			for (Entry<String, LscDatasets> resource : someResources.entrySet()) {
+				LscDatasets existing = resources.putIfAbsent(resource.getKey(), resource.getValue());
+				if (existing != null) {
+					LOGGER.warn(String.format("%s %s found in several partitions: %s and %s", getPivotName(),
+							resource.getKey(), existing.getStringValueAttribute(DN),
+							resource.getValue().getStringValueAttribute(DN)));
+				}
 			}
+			if (someResources instanceof FusionDirectoryPivotMap) {
+				((FusionDirectoryPivotMap) someResources).close();
+			}
+		}
+		return resources;
+	}
+
+	protected interface PartitionListing<T> {
+		T list(Optional<String> partitionBase, Optional<String> partitionFilter) throws LscServiceException;
+	}
+
+	protected Map<String, LscDatasets> getList(Optional<String> computedFilter) throws LscServiceException {
+		Map<String, LscDatasets> resources = new LinkedHashMap<>();
+		String pivotName = getPivotName();
+		dao.getList(entity, base, pivot, computedFilter, (dn, pivotValue) -> {
+			if (pivotValue == null) {
+				LOGGER.debug(String.format("No pivot value for %s, ignored", dn));
+				return;
+			}
+			LscDatasets datasets = new LscDatasets();
+			datasets.put(DN, dn);
+			datasets.put(pivotName, pivotValue);
+			resources.put(pivotValue, datasets);
+			dnCache.put(pivotValue, dn);
+		});
+		return resources;
+
+	}
+
+	/**
+	 * Parse the lookup filters once, to be called when the filter settings are set.
+	 */
+	protected void prepareFilters() {
+		oneFilterTemplate = oneFilter.map(FusionDirectoryFilterTemplate::new).orElse(null);
+		cleanFilterTemplate = cleanFilter.map(FusionDirectoryFilterTemplate::new).orElse(null);
+		pivotAssertion = "(" + getPivotName() + "=";
+		pivotFilterStart = filter.map(f -> "(&" + f + "(|").orElse("(|");
+		pivotFilterEnd = filter.isPresent() ? "))" : ")";
+	}
+
+	protected Optional<Entry<String, LscDatasets>> findFirstByPivots(LscDatasets pivots, boolean clean)
+			throws LscServiceException {
+		FusionDirectoryFilterTemplate filterTemplate = clean ? cleanFilterTemplate : oneFilterTemplate;
+		String computedFilter;
+		if (filterTemplate != null) {
+			computedFilter = filterTemplate.render(pivots);
 		} else {
-			StringBuilder pivotFilter = new StringBuilder("(|");
+			StringBuilder pivotFilter = new StringBuilder(pivotFilterStart);
+			boolean hasValue = false;
 			for (String somePivot : pivots.getAttributesNames()) {
-				pivotFilter.append("(").append(getPivotName()).append("=")
-						.append(pivots.getValueForFilter(somePivot.toLowerCase())).append(")");
+				String pivotValue = pivots.getStringValueAttribute(somePivot);
+				if (pivotValue != null) {
+					FusionDirectoryFilterTemplate.appendEscaped(pivotFilter.append(pivotAssertion), pivotValue)
+							.append(')');
+					hasValue = true;
+				}
+			}
+			if (!hasValue) {
+				return Optional.empty();
 			}
-			pivotFilter.append(")");
-			computedFilter = Optional
-					.of(filter.map(f -> "(&" + f + pivotFilter.toString() + ")").orElse(pivotFilter.toString()));
+			computedFilter = pivotFilter.append(pivotFilterEnd).toString();
 		}
-		return getList(computedFilter).entrySet().stream().findFirst();
+		return getList(Optional.of(computedFilter)).entrySet().stream().findFirst();
 	}
 
 	protected String getPivotName() {
@@ -108,47 +284,116 @@ public abstract class FusionDirectoryAbstractService implements IService {
 	}
 
 	protected Optional<Entry<String, LscDatasets>> findFirstByPivot(String pivotValue) throws LscServiceException {
-		StringBuilder pivotFilter = new StringBuilder();
-		pivotFilter.append("(").append(dao.getPivotName(pivot)).append("=").append(pivotValue).append(")");
+		StringBuilder pivotFilter = new StringBuilder(pivotAssertion);
+		FusionDirectoryFilterTemplate.appendEscaped(pivotFilter, pivotValue).append(')');
 		return getList(Optional.of(pivotFilter.toString())).entrySet().stream().findFirst();
 	}
 
 
-	protected boolean create(Map<String, List<Object>> modificationsItemsByHash) throws LscServiceException {
-		return dao.create(entity, prepareAttributes(modificationsItemsByHash), template);
+	protected boolean create(String mainIdentifier, Map<String, List<Object>> modificationsItemsByHash)
+			throws LscServiceException {
+		// A failed create is only sent again when the object cannot be found
+		Optional<String> dn = dao.create(entity, prepareAttributes(modificationsItemsByHash), template,
+				mainIdentifier == null ? null
+						: () -> findFirstByPivot(mainIdentifier)
+								.map(entry -> entry.getValue().getStringValueAttribute(DN)));
+		if (dn.isPresent() && mainIdentifier != null) {
+			dnCache.put(mainIdentifier, dn.get());
+		}
+		return true;
 	}
 
 	public boolean modify(String mainIdentifier, Map<String, List<Object>> modificationsItemsByHash) throws LscServiceException {
+		String cachedDn = dnCache.get(mainIdentifier);
+		if (cachedDn != null) {
+			try {
+				return modify(mainIdentifier, cachedDn, modificationsItemsByHash);
+			} catch (FusionDirectoryStatusException e) {
+				return modify(mainIdentifier, findMovedDn(mainIdentifier, cachedDn, e), modificationsItemsByHash);
+			}
+		}
 		// retrieve DN
 		Optional<Entry<String, LscDatasets>> entry = findFirstByPivot(mainIdentifier);
 		if (entry.isPresent()) {
-			return dao.modify(entity, entry.get().getValue().getStringValueAttribute(DN),
-					prepareAttributes(modificationsItemsByHash), prepareAttributesToDelete(modificationsItemsByHash));
+			return modify(mainIdentifier, entry.get().getValue().getStringValueAttribute(DN), modificationsItemsByHash);
 		}
 		throw new LscServiceException(String.format("Cannot find entity %s", mainIdentifier));
 	}
 
+	private boolean modify(String mainIdentifier, String dn, Map<String, List<Object>> modificationsItemsByHash)
+			throws LscServiceException {
+		boolean modified = dao.modify(entity, dn, prepareAttributes(modificationsItemsByHash),
+				prepareAttributesToDelete(modificationsItemsByHash), concurrentDeletes);
+		// Moving or renaming the object changes its dn
+		if (modificationsItemsByHash.keySet().stream()
+				.anyMatch(attribute -> attribute.equalsIgnoreCase(BASE) || attribute.equalsIgnoreCase(getPivotName()))) {
+			dnCache.remove(mainIdentifier);
+		}
+		return modified;
+	}
+
 	public boolean delete(String mainIdentifier) throws LscServiceException {
+		String cachedDn = dnCache.remove(mainIdentifier);
+		if (cachedDn != null) {
+			try {
+				return dao.delete(entity, cachedDn);
+			} catch (FusionDirectoryStatusException e) {
+				return dao.delete(entity, findMovedDn(mainIdentifier, cachedDn, e));
+			}
+		}
+		Optional<Entry<String, LscDatasets>> entry = findFirstByPivot(mainIdentifier);
+		if (!entry.isPresent()) {
+			throw new LscServiceException(String.format("Cannot find entity %s", mainIdentifier));
+		}
+		return dao.delete(entity, entry.get().getValue().getStringValueAttribute(DN));
+	}
 
+	/**
+	 * The dn of an object which was not found at its cached dn: it may have been moved or renamed since
+	 * the dn was cached. The error is thrown again when it is not a 404, or when the object is not
+	 * found at another dn.
+	 */
+	private String findMovedDn(String mainIdentifier, String cachedDn, FusionDirectoryStatusException e)
+			throws LscServiceException {
+		if (e.getStatus() != FusionDirectoryDao.NOT_FOUND) {
+			throw e;
+		}
+		dnCache.remove(mainIdentifier);
 		Optional<Entry<String, LscDatasets>> entry = findFirstByPivot(mainIdentifier);
-		if (entry.isPresent()) {
-			return dao.delete(entity, entry.get().getValue().getStringValueAttribute(DN));
+		String dn = entry.isPresent() ? entry.get().getValue().getStringValueAttribute(DN) : null;
+		if (dn == null || dn.equalsIgnoreCase(cachedDn)) {
+			throw e;
 		}
-		throw new LscServiceException(String.format("Cannot find entity %s", mainIdentifier));
+		LOGGER.debug(String.format("%s moved from cached dn %s to %s", mainIdentifier, cachedDn, dn));
+		return dn;
 	}
 
-	protected ValuesType getAttributes() {
-		ValuesType flatAttributes = new ValuesType();
-		for (AttributesTab attributesTab : attributesSettings.getTab()) {
-			for (Attribute attribute : attributesTab.getAttribute()) {
-				flatAttributes.getString().add(attribute.getValue());
+	protected static Map<String, String> newDnCache(int maxSize) {
+		return Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > maxSize;
 			}
-		}
-		return flatAttributes;
+		});
 	}
 
 	protected Map<String, Object> getDetails(String dn) throws LscServiceException {
-		return dao.getDetails(dn, entity, attributesSettings);
+		if (ldapAttributesDetails) {
+			return dao.getLdapDetails(dn, entity, attributes);
+		}
+		return dao.getDetails(dn, entity, attributes, tabConcurrency);
+	}
+
+	protected boolean isLdapAttributesDetailMode(String detailMode) throws LscServiceConfigurationException {
+		if (DETAIL_MODE_LDAP_ATTRS.equalsIgnoreCase(detailMode)) {
+			return true;
+		} else if (DETAIL_MODE_TABS.equalsIgnoreCase(detailMode)) {
+			return false;
+		}
+		throw new LscServiceConfigurationException(String.format("Unknown detailMode %s, expecting %s or %s",
+				detailMode, DETAIL_MODE_TABS, DETAIL_MODE_LDAP_ATTRS));
 	}
 
 	protected Optional<String> getStringParameter(String parameter) {
@@ -159,27 +404,33 @@ public abstract class FusionDirectoryAbstractService implements IService {
 			throws LscServiceException {
 		Map<String, Map<String, Object>> attrs = new HashMap<String, Map<String, Object>>();
 		for (String attribute : modificationsItemsByHash.keySet()) {
-			TabAttribute tabAttribute = getTabAttribute(attribute);
+			MappedAttribute tabAttribute = attributes.get(attribute);
 			if (modificationsItemsByHash.get(attribute) instanceof ArrayList<?>) {
 				ArrayList<?> list = (ArrayList<?>) modificationsItemsByHash.get(attribute);
-				if (!list.isEmpty() || tabAttribute.getAttribute().isMultiple() || tabAttribute.isOption()) {
+				if (list.isEmpty() && tabAttribute.isClearedInPatch()) {
+					// Empty values unset the attribute along with the other updates of the tab
+					if (attrs.get(tabAttribute.getTab()) == null) {
+						attrs.put(tabAttribute.getTab(), new HashMap<String, Object>());
+					}
+					attrs.get(tabAttribute.getTab()).put(tabAttribute.getName(), "");
+				} else if (!list.isEmpty() || tabAttribute.isMultiple() || tabAttribute.isOption()) {
 					if (attrs.get(tabAttribute.getTab()) == null) {
 						attrs.put(tabAttribute.getTab(), new HashMap<String, Object>());
 					}
 					if (tabAttribute.isOption()) {
-						String attributeShortName = tabAttribute.stripOptionFromAttributeName();
+						String attributeShortName = tabAttribute.getLdapName();
 						attrs.get(tabAttribute.getTab()).put(attributeShortName, tabAttribute
-								.getOptionValues(attrs.get(tabAttribute.getTab()).get(attributeShortName), list));
-					} else if (tabAttribute.getAttribute().isMultiple()) {
-						attrs.get(tabAttribute.getTab()).put(tabAttribute.getAttribute().getValue(), list);
-					} else if (tabAttribute.getAttribute().getPasswordHash() != null) {
+								.addOptionValues(attrs.get(tabAttribute.getTab()).get(attributeShortName), list));
+					} else if (tabAttribute.isMultiple()) {
+						attrs.get(tabAttribute.getTab()).put(tabAttribute.getName(), list);
+					} else if (tabAttribute.getPasswordHash() != null) {
 						// specific use case for userPassword attribute: need to be sent as an array
 						// with hash to be set, otherwise new password is ignored by Fusiondirectory if
 						// it was not set
-						attrs.get(tabAttribute.getTab()).put(tabAttribute.getAttribute().getValue(),
-								getPasswordArray(list.get(0), tabAttribute.getAttribute().getPasswordHash()));
+						attrs.get(tabAttribute.getTab()).put(tabAttribute.getName(),
+								getPasswordArray(list.get(0), tabAttribute.getPasswordHash()));
 					} else {
-						attrs.get(tabAttribute.getTab()).put(tabAttribute.getAttribute().getValue(), list.get(0));
+						attrs.get(tabAttribute.getTab()).put(tabAttribute.getName(), list.get(0));
 					}
 				}
 			} else {
@@ -194,11 +445,12 @@ public abstract class FusionDirectoryAbstractService implements IService {
 			throws LscServiceException {
 		List<String> toDelete = new ArrayList<>();
 		for (String attribute : modificationsItemsByHash.keySet()) {
-			TabAttribute tabAttribute = getTabAttribute(attribute);
+			MappedAttribute tabAttribute = attributes.get(attribute);
 			if (modificationsItemsByHash.get(attribute) instanceof ArrayList<?>) {
 				if (((ArrayList<?>) modificationsItemsByHash.get(attribute)).isEmpty()
-						&& !tabAttribute.getAttribute().isMultiple() && !tabAttribute.isOption()) {
-					toDelete.add(tabAttribute.getTab() + "/" + tabAttribute.getAttribute().getValue());
+						&& !tabAttribute.isMultiple() && !tabAttribute.isOption()
+						&& !tabAttribute.isClearedInPatch()) {
+					toDelete.add(tabAttribute.getTab() + "/" + tabAttribute.getName());
 				}
 			} else {
 				throw new LscServiceException(String.format("%s is not a supported type for attribute %s",
@@ -216,70 +468,6 @@ public abstract class FusionDirectoryAbstractService implements IService {
 	}
 
 
-
-
-	private TabAttribute getTabAttribute(String attribute) throws LscServiceException {
-		TabAttribute tabAttribute = null;
-
-		for (AttributesTab attributesTab : attributesSettings.getTab()) {
-			for (Attribute someAttribute : attributesTab.getAttribute()) {
-				if (someAttribute.getValue().equalsIgnoreCase(attribute)) {
-					tabAttribute = new TabAttribute(attributesTab.getName(), someAttribute);
-				}
-			}
-		}
-		if (tabAttribute == null) {
-			throw new LscServiceException(String.format("Cannot find tab for attribute %s", attribute));
-		}
-		return tabAttribute;
-	}
-
-	private class TabAttribute {
-		String tab;
-		Attribute attribute;
-
-		public TabAttribute(String tab, Attribute attribute) {
-			this.tab = tab;
-			this.attribute = attribute;
-		}
-
-		public String getTab() {
-			return tab;
-		}
-
-		public Attribute getAttribute() {
-			return attribute;
-		}
-
-		public boolean isOption() {
-			return FusionDirectoryDao.isOptionAttribute(attribute.getValue());
-		}
-
-		public String stripOptionFromAttributeName() {
-			return FusionDirectoryDao.stripOptionFromAttributeName(attribute.getValue());
-		}
-
-		@SuppressWarnings("unchecked")
-		public Object getOptionValues(Object currentValues, ArrayList<?> list) {
-			List<String> newValues = new ArrayList<>();
-			Matcher mopt = FusionDirectoryDao.PATTERN_ATTR_OPT.matcher(attribute.getValue());
-			if (mopt.matches()) {
-				String option = mopt.group(2);
-				if (currentValues != null) {
-					if (currentValues instanceof String) {
-						newValues.add((String) currentValues);
-					} else if (currentValues instanceof List<?>) {
-						newValues.addAll((List<? extends String>) currentValues);
-					}
-				}
-				for (Object value : list) {
-					newValues.add(option.toLowerCase() + ";" + (String) value);
-				}
-			}
-			return newValues;
-		}
-	}
-
 	@Override
 	public Collection<Class<? extends ConnectionType>> getSupportedConnectionType() {
 		Collection<Class<? extends ConnectionType>> list = new ArrayList<Class<? extends ConnectionType>>();
@@ -0,0 +1,234 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.lsc.exception.LscServiceException;
+import org.lsc.plugins.connectors.fusiondirectory.generated.Attribute;
+import org.lsc.plugins.connectors.fusiondirectory.generated.Attributes;
+import org.lsc.plugins.connectors.fusiondirectory.generated.AttributesTab;
+
+/**
+ * The configured attributes, indexed once when the service is built.
+ * Attribute names are case insensitive, like in LSC.
+ */
+class FusionDirectoryAttributes {
+
+	private final List<AttributesTab> tabs;
+	private final List<String> names;
+	private final Map<String, MappedAttribute> attributesByName;
+	private final Map<AttributesTab, List<MappedAttribute>> attributesByTab;
+	private final Set<String> ldapAttributes;
+
+	FusionDirectoryAttributes(Attributes attributesSettings) {
+		List<AttributesTab> someTabs = attributesSettings != null ? attributesSettings.getTab() : new ArrayList<>();
+		List<String> someNames = new ArrayList<>();
+		Map<String, MappedAttribute> someAttributesByName = new HashMap<>();
+		Map<AttributesTab, List<MappedAttribute>> someAttributesByTab = new IdentityHashMap<>();
+		Set<String> someLdapAttributes = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		for (AttributesTab attributesTab : someTabs) {
+			List<MappedAttribute> tabAttributes = new ArrayList<>();
+			for (Attribute attribute : attributesTab.getAttribute()) {
+				MappedAttribute mappedAttribute = new MappedAttribute(attributesTab, attribute);
+				someNames.add(attribute.getValue());
+				// The last configured attribute wins when an attribute is set in several tabs
+				someAttributesByName.put(attribute.getValue().toLowerCase(Locale.ROOT), mappedAttribute);
+				tabAttributes.add(mappedAttribute);
+				someLdapAttributes.add(mappedAttribute.getLdapName());
+			}
+			someAttributesByTab.put(attributesTab, Collections.unmodifiableList(tabAttributes));
+		}
+		this.tabs = Collections.unmodifiableList(new ArrayList<>(someTabs));
+		this.names = Collections.unmodifiableList(someNames);
+		this.attributesByName = someAttributesByName;
+		this.attributesByTab = someAttributesByTab;
+		this.ldapAttributes = Collections.unmodifiableSet(someLdapAttributes);
+	}
+
+	List<AttributesTab> getTabs() {
+		return tabs;
+	}
+
+	/**
+	 * The configured attribute names, in configuration order.
+	 */
+	List<String> getNames() {
+		return names;
+	}
+
+	List<MappedAttribute> getAttributes(AttributesTab attributesTab) {
+		return attributesByTab.getOrDefault(attributesTab, Collections.emptyList());
+	}
+
+	MappedAttribute get(String attribute) throws LscServiceException {
+		MappedAttribute mappedAttribute = attributesByName.get(attribute.toLowerCase(Locale.ROOT));
+		if (mappedAttribute == null) {
+			throw new LscServiceException(String.format("Cannot find tab for attribute %s", attribute));
+		}
+		return mappedAttribute;
+	}
+
+	/**
+	 * The LDAP attributes holding the configured attributes, as a new case insensitive set.
+	 */
+	Set<String> getLdapAttributes() {
+		Set<String> someLdapAttributes = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		someLdapAttributes.addAll(ldapAttributes);
+		return someLdapAttributes;
+	}
+
+	static final class MappedAttribute {
+		private final String tab;
+		private final String name;
+		private final String ldapName;
+		private final boolean multiple;
+		private final String passwordHash;
+		private final boolean clearedInPatch;
+		// Option attributes, like description;lang-fr, only
+		private final String optionPrefix;
+		private final Pattern optionPattern;
+
+		private MappedAttribute(AttributesTab attributesTab, Attribute attribute) {
+			this.tab = attributesTab.getName();
+			this.name = attribute.getValue();
+			this.multiple = attribute.isMultiple();
+			this.passwordHash = attribute.getPasswordHash();
+			Matcher mopt = FusionDirectoryDao.PATTERN_ATTR_OPT.matcher(name);
+			if (mopt.matches()) {
+				this.ldapName = mopt.group(1);
+				this.optionPrefix = mopt.group(2).toLowerCase() + ";";
+				this.optionPattern = Pattern.compile("(?i)" + mopt.group(2) + ";");
+			} else {
+				this.ldapName = name;
+				this.optionPrefix = null;
+				this.optionPattern = null;
+			}
+			this.clearedInPatch = attributesTab.isClearInPatch() && !multiple && !isOption();
+		}
+
+		String getTab() {
+			return tab;
+		}
+
+		String getName() {
+			return name;
+		}
+
+		/**
+		 * The attribute name without its option.
+		 */
+		String getLdapName() {
+			return ldapName;
+		}
+
+		boolean isMultiple() {
+			return multiple;
+		}
+
+		String getPasswordHash() {
+			return passwordHash;
+		}
+
+		boolean isOption() {
+			return optionPrefix != null;
+		}
+
+		boolean isClearedInPatch() {
+			return clearedInPatch;
+		}
+
+		/**
+		 * Keep the values holding the option of this attribute, without the option.
+		 */
+		@SuppressWarnings("unchecked")
+		List<String> filterAndStripOption(Object rawValues) {
+			List<String> values = new ArrayList<String>();
+			if (optionPrefix != null) {
+				if (rawValues instanceof String) {
+					addStrippedValue((String) rawValues, values);
+				} else if (rawValues instanceof List<?>) {
+					for (Object rawValue : (List<Object>) rawValues) {
+						addStrippedValue((String) rawValue, values);
+					}
+				}
+			}
+			return values;
+		}
+
+		private void addStrippedValue(String rawValue, List<String> values) {
+			if (rawValue.regionMatches(true, 0, optionPrefix, 0, optionPrefix.length())) {
+				values.add(optionPattern.matcher(rawValue).replaceAll(""));
+			}
+		}
+
+		/**
+		 * Add the values of this attribute, prefixed by its option, to the values of the other options.
+		 */
+		@SuppressWarnings("unchecked")
+		List<String> addOptionValues(Object currentValues, List<?> list) {
+			List<String> newValues = new ArrayList<>();
+			if (optionPrefix != null) {
+				if (currentValues instanceof String) {
+					newValues.add((String) currentValues);
+				} else if (currentValues instanceof List<?>) {
+					newValues.addAll((List<? extends String>) currentValues);
+				}
+				for (Object value : list) {
+					newValues.add(optionPrefix + (String) value);
+				}
+			}
+			return newValues;
+		}
+	}
+}
@@ -43,84 +43,192 @@
 package org.lsc.plugins.connectors.fusiondirectory;
 
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.glassfish.jersey.client.ClientConfig;
-import org.glassfish.jersey.client.ClientProperties;
-import org.glassfish.jersey.client.JerseyClientBuilder;
-import org.glassfish.jersey.jackson.JacksonFeature;
-import org.glassfish.jersey.jdk.connector.JdkConnectorProvider;
 import org.lsc.exception.LscServiceException;
+import org.lsc.plugins.connectors.fusiondirectory.FusionDirectoryHttp.Response;
+import org.lsc.plugins.connectors.fusiondirectory.FusionDirectoryHttp.Target;
+import org.lsc.plugins.connectors.fusiondirectory.FusionDirectoryAttributes.MappedAttribute;
 import org.lsc.plugins.connectors.fusiondirectory.beans.Login;
 import org.lsc.plugins.connectors.fusiondirectory.beans.Tab;
 import org.lsc.plugins.connectors.fusiondirectory.beans.Token;
-import org.lsc.plugins.connectors.fusiondirectory.generated.Attribute;
-import org.lsc.plugins.connectors.fusiondirectory.generated.Attributes;
 import org.lsc.plugins.connectors.fusiondirectory.generated.AttributesTab;
+import org.lsc.plugins.connectors.fusiondirectory.generated.ServiceSettings;
+import org.lsc.plugins.connectors.fusiondirectory.generated.Transport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-import jakarta.ws.rs.client.Entity;
-import jakarta.ws.rs.client.WebTarget;
-import jakarta.ws.rs.core.MediaType;
-import jakarta.ws.rs.core.Response;
-
 public class FusionDirectoryDao {
 
 	private static final String UID = "uid";
 	private static final String DN = "dn";
 	private static final String DEFAULT = "default";
-	private static final String SESSION_TOKEN = "Session-Token";
+	private static final String JERSEY = "jersey";
+	private static final String JDK = "jdk";
+	private static final int BAD_REQUEST = 400;
+	static final int NOT_FOUND = 404;
+	private static final int UNAUTHORIZED = 401;
 	private static final String OBJECTS = "objects";
 	private static final Logger LOGGER = LoggerFactory.getLogger(FusionDirectoryDao.class);
 	public static final Pattern PATTERN_ATTR_OPT = Pattern.compile("^(\\w+);(.*)$");
-	private static final int DEFAULT_CONNECT_TIMEOUT_MS = 1000;
-	private static final int DEFAULT_READ_TIMEOUT_MS = 5000;
+	// No limit: one session per concurrent request
+	private static final int DEFAULT_SESSION_POOL_SIZE = 0;
+	private static final int DEFAULT_MAX_RETRIES = 2;
+	private static final int DEFAULT_RETRY_BACKOFF_MS = 200;
+	private static final long MAX_RETRY_BACKOFF_MS = 10000;
+	// Statuses sent by FusionDirectory, or the proxy in front of it, when it cannot keep up
+	private static final Set<Integer> OVERLOADED_STATUSES = Set.of(429, 502, 503, 504);
+	// Requests which can be sent again without side effects
+	private static final RetryCheck IDEMPOTENT = () -> true;
+	private static final TypeReference<Map<String, Object>> TAB_VALUES_TYPE = new TypeReference<Map<String, Object>>() {};
 
 	private final String username;
 	private final String password;
-	private final int sessionLifetime;
 	private final String directory;
 
-	private WebTarget target;
+	private final FusionDirectoryHttp http;
+	private final Target target;
 	private ObjectMapper mapper;
 
-	// Keep one token / thread worker
-	private Map<String, Token> tokenCache;
+	private final FusionDirectoryEndpoints endpoints;
+	private final FusionDirectoryMetrics metrics = new FusionDirectoryMetrics();
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	private FusionDirectoryThrottle throttle = new FusionDirectoryThrottle(0, 0, 0);
+	private int maxRetries = DEFAULT_MAX_RETRIES;
+	private int retryBackoff = DEFAULT_RETRY_BACKOFF_MS;
+	private final int listTimeout;
+	private final int detailTimeout;
+	private final int writeTimeout;
+	// Milliseconds allowed to read all the tabs of an object, 0 for no limit
+	private final int objectDeadline;
+
+	/**
+	 * Find the dn of an object, if it exists.
+	 */
+	interface ObjectLookup {
+		Optional<String> findDn() throws LscServiceException;
+	}
+
+	/**
+	 * Whether a failed request may be sent again.
+	 */
+	private interface RetryCheck {
+		boolean shouldRetry() throws LscServiceException;
+	}
+
+	public FusionDirectoryDao(String url, String username, String password, ServiceSettings settings) {
+		this(url, username, password, settings.getSessionLifetime().intValue(),
+				settings.getSessionPoolSize().intValue(),
+				Optional.ofNullable(settings.getDirectory()).filter(d -> !d.trim().isEmpty()),
+				settings.getTransport() != null ? settings.getTransport() : new Transport());
+		this.throttle = new FusionDirectoryThrottle(settings.getMaxInFlight().intValue(),
+				settings.getTargetLatency().intValue(), settings.getRateLimit().intValue());
+		this.maxRetries = settings.getMaxRetries().intValue();
+		this.retryBackoff = settings.getRetryBackoff().intValue();
+	}
 
 	public FusionDirectoryDao(String url, String username, String password, int sessionLifetime,
 			Optional<String> directory) {
+		this(url, username, password, sessionLifetime, DEFAULT_SESSION_POOL_SIZE, directory);
+	}
+
+	public FusionDirectoryDao(String url, String username, String password, int sessionLifetime,
+			int sessionPoolSize, Optional<String> directory) {
+		this(url, username, password, sessionLifetime, sessionPoolSize, directory, new Transport());
+	}
+
+	private FusionDirectoryDao(String url, String username, String password, int sessionLifetime,
+			int sessionPoolSize, Optional<String> directory, Transport transport) {
 		mapper = new ObjectMapper();
 		this.username = username;
 		this.password = password;
-		this.sessionLifetime = sessionLifetime;
 		this.directory = getDirectory(directory);
-		target = clientBuilder().build().target(url);
-		tokenCache = new HashMap<>();
+		this.listTimeout = transport.getListTimeout();
+		this.detailTimeout = transport.getDetailTimeout();
+		this.writeTimeout = transport.getWriteTimeout();
+		this.objectDeadline = transport.getObjectDeadline();
+		List<String> urls = FusionDirectoryEndpoints.parseUrls(url);
+		http = newHttp(transport);
+		// Requests are built on the first endpoint, then sent to the selected one
+		target = new Target(urls.get(0));
+		endpoints = new FusionDirectoryEndpoints(urls, endpointUrl -> new FusionDirectorySessionPool(sessionPoolSize,
+				sessionLifetime, new FusionDirectorySessionPool.SessionFactory() {
+					@Override
+					public Token login() throws LscServiceException {
+						return startSession(endpointUrl);
+					}
+
+					@Override
+					public void logout(Token token) {
+						closeSession(endpointUrl, token);
+					}
+
+					@Override
+					public void expired(Token token) {
+						metrics.sessionExpired();
+					}
+				}, executor), transport.getEjectAfter(), transport.getEjectionTime());
+		metrics.register(String.format("%s@%s (%s)", username, url, this.directory));
+	}
+
+	/**
+	 * Log out from all the sessions and release the HTTP connections.
+	 */
+	public void close() {
+		endpoints.close();
+		executor.shutdown();
+		http.close();
+		metrics.unregister();
+	}
+
+	FusionDirectoryMetrics getMetrics() {
+		return metrics;
 	}
 
-	private JerseyClientBuilder clientBuilder() {
-		// Use JdkConnectorProvider to support PATCH HTTP method on Java 17
-		// See https://github.com/eclipse-ee4j/jersey/issues/4825
-		ClientConfig clientConfig = new ClientConfig();
-		clientConfig.connectorProvider(new JdkConnectorProvider()).register(new JacksonFeature())
-				.property(ClientProperties.CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT_MS)
-				.property(ClientProperties.READ_TIMEOUT, DEFAULT_READ_TIMEOUT_MS);
-		return new JerseyClientBuilder().withConfig(clientConfig);
+	private static FusionDirectoryHttp newHttp(Transport transport) {
+		if (JDK.equalsIgnoreCase(transport.getClient())) {
+			return new FusionDirectoryJdkHttp(transport);
+		} else if (JERSEY.equalsIgnoreCase(transport.getClient())) {
+			if (transport.isHttp2()) {
+				LOGGER.warn("http2 is only supported by the jdk client, ignored.");
+			}
+			return new FusionDirectoryJerseyHttp(transport);
+		}
+		throw new IllegalArgumentException(String.format("Unknown transport client %s, expecting %s or %s",
+				transport.getClient(), JERSEY, JDK));
 	}
 
 	private String getDirectory(Optional<String> directory) {
@@ -132,179 +240,285 @@ public class FusionDirectoryDao {
 	}
 
 
-	private Token startSession() throws LscServiceException {
+	private Token startSession(String url) throws LscServiceException {
 		Response response = null;
 		try {
 			Login login = new Login();
 			login.setUser(username);
 			login.setPassword(password);
 			login.setDirectory(directory);
-			WebTarget currentTarget = target.path("login");
-			LOGGER.info(String.format("Login to FusionDirectory %s as %s for thread %s ... ",
-					currentTarget.getUri().toString(), username, Thread.currentThread().threadId()));
-			response = currentTarget.request().post(Entity.entity(login, MediaType.APPLICATION_JSON));
+			Target currentTarget = new Target(url).path("login");
+			LOGGER.info(String.format("Login to FusionDirectory %s as %s ... ",
+					currentTarget.getUri().toString(), username));
+			long start = System.nanoTime();
+			response = metrics.track(FusionDirectoryMetrics.LOGIN, start, http.send(FusionDirectoryHttp.POST,
+					currentTarget, null, toJson(login), false, detailTimeout));
 			if (!checkResponse(response)) {
-				String errorMessage = String.format("Cannot log in Fusiondirectory, message: %s", response.readEntity(String.class));
+				String errorMessage = String.format("Cannot log in Fusiondirectory, message: %s", readString(response));
 				LOGGER.error(errorMessage);
 				throw new LscServiceException(errorMessage);
 			}
-			return new Token(response.readEntity(String.class).replaceAll("\n", "").replaceAll("\"", ""));
+			Token token = new Token(readString(response).replaceAll("\n", "").replaceAll("\"", ""));
+			metrics.loggedIn();
+			return token;
+		} catch (IOException e) {
+			metrics.failed(FusionDirectoryMetrics.LOGIN);
+			throw new LscServiceException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LscServiceException(e);
 		} finally {
 			if (response != null) {
 				response.close();
 			}
 		}
 	}
-	private void closeSession(Token token) {
+	private void closeSession(String url, Token token) {
 		Response response = null;
 		try {
-			WebTarget currentTarget = target.path("logout");
-			LOGGER.info(String.format("Logout from FusionDirectory %s as %s for thread %s",
-					currentTarget.getUri().toString(), username, Thread.currentThread().threadId()));
-			response = currentTarget.request().header(SESSION_TOKEN, token.getSessionId()).post(Entity.json(null));
+			Target currentTarget = new Target(url).path("logout");
+			LOGGER.info(String.format("Logout from FusionDirectory %s as %s",
+					currentTarget.getUri().toString(), username));
+			long start = System.nanoTime();
+			response = metrics.track(FusionDirectoryMetrics.LOGOUT, start, http.send(FusionDirectoryHttp.POST,
+					currentTarget, token.getSessionId(), null, false, detailTimeout));
+			String message = response.readString();
 			if (!checkResponse(response)) {
-				String warnMessage = String.format("Cannot logout from Fusiondirectory, message: %s", response.readEntity(String.class));
-				LOGGER.warn(warnMessage);
+				LOGGER.warn(String.format("Cannot logout from Fusiondirectory, message: %s", message));
 			}
-			response.readEntity(String.class);
+		} catch (IOException e) {
+			metrics.failed(FusionDirectoryMetrics.LOGOUT);
+			LOGGER.warn(String.format("Cannot logout from Fusiondirectory (%s)", e));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.warn(String.format("Cannot logout from Fusiondirectory (%s)", e));
 		} finally {
 			if (response != null) {
 				response.close();
 			}
 		}
 	}
-	private Token getToken(boolean resetSession) throws LscServiceException {
-		if (resetSession == true) {
-			LOGGER.info(String.format("Reset FusionDirectory session as %s for thread %s", username,
-					Thread.currentThread().threadId()));
-		}
-		synchronized (tokenCache) {
-			Token token = tokenCache.get(String.valueOf(Thread.currentThread().threadId()));
-			if (token != null && token.hasExpired(this.sessionLifetime)) {
-				LOGGER.info(String.format("Expire FusionDirectory session for thread %s after %s seconds.",
-						Thread.currentThread().threadId(), this.sessionLifetime));
-				closeSession(token);
-				resetSession = true;
-			}
-			if (token == null || resetSession) {
-				token = startSession();
-				tokenCache.put(String.valueOf(Thread.currentThread().threadId()), token);
-			}
-			return token;
-		}
+	private Response httpGet(String kind, Target webTarget, int timeout) throws LscServiceException {
+		return checkedResponse(send(kind, FusionDirectoryHttp.GET, webTarget, null, IDEMPOTENT, timeout));
 	}
-
-	private Response httpGet(WebTarget webTarget) throws LscServiceException {
-		return httpGet(webTarget, false);
-	}
-	private Response httpGet(WebTarget webTarget, boolean resetSession) throws LscServiceException {
-		Response response = webTarget.request().accept(MediaType.APPLICATION_JSON)
-				.header(SESSION_TOKEN, getToken(resetSession).getSessionId()).get(Response.class);
-		if (!resetSession && Response.Status.fromStatusCode(response.getStatus()) == Response.Status.UNAUTHORIZED) {
-			response.close();
-			// Try again once to restart session.
-			return httpGet(webTarget, true);
-		}
-		
-		if (!checkResponse(response)) {
-			String errorMessage = String.format("status: %d, message: %s", response.getStatus(),
-					response.readEntity(String.class));
+	private Optional<Response> httpGetTab(Target webTarget, int timeout) throws LscServiceException {
+		Response response = send(FusionDirectoryMetrics.TAB, FusionDirectoryHttp.GET, webTarget, null, IDEMPOTENT,
+				timeout);
+		if (response.getStatus() == BAD_REQUEST) {
+			LOGGER.debug(String.format("Tab %s refused, message: %s", webTarget.getUri().toString(),
+					readString(response)));
 			response.close();
-			LOGGER.error(errorMessage);
-			throw new LscServiceException(errorMessage);
+			return Optional.empty();
 		}
-		return response;
+		return Optional.of(checkedResponse(response));
 	}
-
-	private Response httpPost(WebTarget webTarget, Entity<?> entity) throws LscServiceException {
-		return httpPost(webTarget, entity, false);
+	private Response httpPatch(Target webTarget, Object entity) throws LscServiceException {
+		// PATCH sets the given values, so sending it again is harmless
+		return checkedResponse(send(FusionDirectoryMetrics.PATCH, FusionDirectoryHttp.PATCH, webTarget, toJson(entity),
+				IDEMPOTENT, writeTimeout));
 	}
-	private Response httpPost(WebTarget webTarget, Entity<?> entity, boolean resetSession) throws LscServiceException {
-		Response response = webTarget.request().header(SESSION_TOKEN, getToken(resetSession).getSessionId())
-				.post(entity);
-		if (!resetSession && Response.Status.fromStatusCode(response.getStatus()) == Response.Status.UNAUTHORIZED) {
-			response.close();
-			// Try again once to restart session.
-			return httpPost(webTarget, entity, true);
-		}
+	private Response httpPut(Target webTarget, Object entity) throws LscServiceException {
+		return checkedResponse(send(FusionDirectoryMetrics.PUT, FusionDirectoryHttp.PUT, webTarget, toJson(entity),
+				IDEMPOTENT, writeTimeout));
+	}
+	private Response httpDelete(Target webTarget) throws LscServiceException {
+		return checkedResponse(send(FusionDirectoryMetrics.DELETE, FusionDirectoryHttp.DELETE, webTarget, null,
+				IDEMPOTENT, writeTimeout));
+	}
+
+	private static Response checkedResponse(Response response) throws LscServiceException {
 		if (!checkResponse(response)) {
 			String errorMessage = String.format("status: %d, message: %s", response.getStatus(),
-					response.readEntity(String.class));
+					readString(response));
 			response.close();
 			LOGGER.error(errorMessage);
-			throw new LscServiceException(errorMessage);
+			throw new FusionDirectoryStatusException(response.getStatus(), errorMessage);
 		}
 		return response;
 	}
 
-	private Response httpPatch(WebTarget webTarget, Entity<?> entity) throws LscServiceException {
-		return httpPatch(webTarget, entity, false);
+	private static String readString(Response response) throws LscServiceException {
+		try {
+			return response.readString();
+		} catch (IOException e) {
+			throw new LscServiceException(e);
+		}
 	}
-	private Response httpPatch(WebTarget webTarget, Entity<?> entity, boolean resetSession) throws LscServiceException {
-		Response response = webTarget.request().header(SESSION_TOKEN, getToken(resetSession).getSessionId())
-				.method("PATCH", entity);
-		if (!resetSession && Response.Status.fromStatusCode(response.getStatus()) == Response.Status.UNAUTHORIZED) {
-			response.close();
-			// Try again once to restart session.
-			return httpPatch(webTarget, entity, true);
+
+	/**
+	 * Serialize a request body. Strings are sent as is.
+	 */
+	private byte[] toJson(Object entity) throws LscServiceException {
+		if (entity instanceof String) {
+			return ((String) entity).getBytes(StandardCharsets.UTF_8);
 		}
-		if (!checkResponse(response)) {
-			String errorMessage = String.format("status: %d, message: %s", response.getStatus(),
-					response.readEntity(String.class));
-			LOGGER.error(errorMessage);
-			response.close();
-			throw new LscServiceException(errorMessage);
+		try {
+			return mapper.writeValueAsBytes(entity);
+		} catch (JsonProcessingException e) {
+			throw new LscServiceException(e);
 		}
-		return response;
 	}
 
-	private Response httpPut(WebTarget webTarget, Entity<?> entity) throws LscServiceException {
-		return httpPut(webTarget, entity, false);
+	/**
+	 * Send a request within the throttle limits. The session is restarted once when FusionDirectory
+	 * rejects it. When the server fails to answer or answers it is overloaded, the request is sent again
+	 * after a jittered exponential backoff, up to maxRetries times, if the retry check allows it.
+	 * The timeout, in milliseconds, applies to reading the response.
+	 * Each attempt goes to the endpoint with the fewest outstanding requests, using one of its sessions
+	 * until the response is closed.
+	 * Metrics are recorded under the given request kind.
+	 */
+	private Response send(String kind, String method, Target webTarget, byte[] entity, RetryCheck retryCheck,
+			int timeout) throws LscServiceException {
+		boolean resetSession = false;
+		int attempt = 0;
+		while (true) {
+			FusionDirectoryEndpoints.Endpoint endpoint = endpoints.select();
+			Target endpointTarget = webTarget.withUrl(endpoint.getUrl());
+			FusionDirectorySessionPool sessions = endpoint.getSessions();
+			Token token;
+			try {
+				token = sessions.acquire();
+			} catch (LscServiceException e) {
+				// Only an unreachable endpoint is worth another try
+				if (!(e.getCause() instanceof IOException)) {
+					throw e;
+				}
+				endpoints.failed(endpoint);
+				if (!mayRetry(retryCheck, attempt)) {
+					throw e;
+				}
+				LOGGER.warn(String.format("%s %s failed to log in, retrying", method, endpointTarget.getUri()));
+				metrics.retried(kind);
+				backoff(++attempt);
+				continue;
+			}
+			try {
+				acquireThrottle();
+			} catch (LscServiceException e) {
+				sessions.release(token);
+				throw e;
+			}
+			long start = System.nanoTime();
+			Response response;
+			endpoint.begin();
+			try {
+				response = endpoint.track(metrics.track(kind, start, http.send(method, endpointTarget,
+						token.getSessionId(), entity, FusionDirectoryHttp.GET.equals(method), timeout)));
+			} catch (IOException e) {
+				endpoint.end();
+				endpoints.failed(endpoint);
+				metrics.failed(kind);
+				throttle.release(System.nanoTime() - start, true);
+				sessions.release(token);
+				if (!mayRetry(retryCheck, attempt)) {
+					throw new LscServiceException(e);
+				}
+				LOGGER.warn(String.format("%s %s failed, retrying (%s)", method, endpointTarget.getUri(), e));
+				metrics.retried(kind);
+				backoff(++attempt);
+				continue;
+			} catch (InterruptedException e) {
+				endpoint.end();
+				throttle.release(System.nanoTime() - start, false);
+				sessions.release(token);
+				Thread.currentThread().interrupt();
+				throw new LscServiceException(e);
+			} catch (RuntimeException e) {
+				endpoint.end();
+				throttle.release(System.nanoTime() - start, false);
+				sessions.release(token);
+				throw e;
+			}
+			boolean overloaded = OVERLOADED_STATUSES.contains(response.getStatus());
+			long latency = System.nanoTime() - start;
+			if (response.getStatus() == UNAUTHORIZED) {
+				// A rejected session is not given back
+				sessions.invalidate(token);
+				metrics.sessionRejected();
+			}
+			// The session and the throttle slot are held until the body is read, listings may take long to stream
+			response = Response.onClose(response, () -> {
+				throttle.release(latency, overloaded);
+				sessions.release(token);
+			});
+			if (overloaded) {
+				endpoints.failed(endpoint);
+			} else {
+				endpoints.succeeded(endpoint);
+			}
+			if (!resetSession && response.getStatus() == UNAUTHORIZED) {
+				response.close();
+				// Try again once to restart session.
+				resetSession = true;
+				continue;
+			}
+			if (overloaded) {
+				// Give back the throttle slot and the session first: the retry check may send requests itself
+				response = buffer(response);
+				if (mayRetry(retryCheck, attempt)) {
+					LOGGER.warn(String.format("%s %s answered status %d, retrying", method, endpointTarget.getUri(),
+							response.getStatus()));
+					metrics.retried(kind);
+					backoff(++attempt);
+					continue;
+				}
+			}
+			return response;
+		}
 	}
 
-	private Response httpPut(WebTarget webTarget, Entity<?> entity, boolean resetSession) throws LscServiceException {
-		Response response = webTarget.request().header(SESSION_TOKEN, getToken(resetSession).getSessionId())
-				.put(entity);
-		if (!resetSession && Response.Status.fromStatusCode(response.getStatus()) == Response.Status.UNAUTHORIZED) {
+	/**
+	 * Read and close a response, returning a copy of it.
+	 */
+	private static Response buffer(Response response) {
+		try {
+			byte[] body;
+			try (InputStream in = response.getBody()) {
+				body = in.readAllBytes();
+			} catch (IOException e) {
+				LOGGER.debug(String.format("Cannot read the %d response body (%s)", response.getStatus(), e));
+				body = new byte[0];
+			}
+			return Response.of(response.getStatus(), body);
+		} finally {
 			response.close();
-			// Try again once to restart session.
-			return httpPut(webTarget, entity, true);
 		}
-		if (!checkResponse(response)) {
-			String errorMessage = String.format("status: %d, message: %s", response.getStatus(),
-					response.readEntity(String.class));
-			LOGGER.error(errorMessage);
-			response.close();
-			throw new LscServiceException(errorMessage);
+	}
+
+	private void acquireThrottle() throws LscServiceException {
+		try {
+			throttle.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LscServiceException(e);
 		}
-		return response;
 	}
 
-	private Response httpDelete(WebTarget webTarget) throws LscServiceException {
-		return httpDelete(webTarget, false);
+	private boolean mayRetry(RetryCheck retryCheck, int attempt) throws LscServiceException {
+		return retryCheck != null && attempt < maxRetries && retryCheck.shouldRetry();
 	}
-	private Response httpDelete(WebTarget webTarget, boolean resetSession) throws LscServiceException {
-		Response response = webTarget.request().header(SESSION_TOKEN, getToken(resetSession).getSessionId()).delete();
-		if (!resetSession && Response.Status.fromStatusCode(response.getStatus()) == Response.Status.UNAUTHORIZED) {
-			response.close();
-			// Try again once to restart session.
-			return httpDelete(webTarget, true);
-		}
-		if (!checkResponse(response)) {
-			String errorMessage = String.format("status: %d, message: %s", response.getStatus(),
-					response.readEntity(String.class));
-			response.close();
-			LOGGER.error(errorMessage);
-			throw new LscServiceException(errorMessage);
+
+	private void backoff(int attempt) throws LscServiceException {
+		long delay = Math.min(MAX_RETRY_BACKOFF_MS, (long) retryBackoff << Math.min(attempt - 1, 16));
+		try {
+			Thread.sleep(ThreadLocalRandom.current().nextLong(delay + 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LscServiceException(e);
 		}
-		return response;
 	}
 
-	public ObjectNode getList(String entity, Optional<String> base, Optional<String> pivot,
-			Optional<String> computedFilter) throws LscServiceException {
+	/**
+	 * List the objects of an entity, streaming the response instead of buffering it.
+	 * The handler is called once per object with its dn and its first pivot value,
+	 * or with a null pivot value when the object has no scalar pivot value, or no pivot attribute has been requested.
+	 */
+	public void getList(String entity, Optional<String> base, Optional<String> pivot,
+			Optional<String> computedFilter, BiConsumer<String, String> handler) throws LscServiceException {
 		Response response = null;
 		try {
-			WebTarget currentTarget = target.path(OBJECTS).path(entity);
+			Target currentTarget = target.path(OBJECTS).path(entity);
 			if (base.isPresent()) {
 				currentTarget = currentTarget.queryParam("base", base.get());
 			}
@@ -316,9 +530,98 @@ public class FusionDirectoryDao {
 			}
 			LOGGER.debug(String.format("Search %s from: %s with filter %s ", entity, currentTarget.getUri().toString(),
 					computedFilter));
-			return (ObjectNode) mapper.readTree(httpGet(currentTarget).readEntity(String.class));
+			response = httpGet(FusionDirectoryMetrics.LIST, currentTarget, listTimeout);
+			try (InputStream body = response.getBody();
+					JsonParser parser = mapper.getFactory().createParser(body)) {
+				parseList(parser, handler);
+			}
+		} catch (IOException e) {
+			throw new LscServiceException(e);
+		} finally {
+			if (response != null) {
+				response.close();
+			}
+		}
+	}
 
-		} catch (JsonProcessingException e) {
+	private static void parseList(JsonParser parser, BiConsumer<String, String> handler) throws IOException {
+		if (parser.nextToken() != JsonToken.START_OBJECT) {
+			// Empty result is sent as an empty array
+			parser.skipChildren();
+			return;
+		}
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String dn = parser.currentName();
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				parser.skipChildren();
+				handler.accept(dn, null);
+				continue;
+			}
+			String pivotValue = null;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				JsonToken token = parser.nextToken();
+				if (pivotValue == null && token == JsonToken.START_ARRAY) {
+					while (parser.nextToken() != JsonToken.END_ARRAY) {
+						if (pivotValue == null && parser.currentToken().isScalarValue()) {
+							pivotValue = parser.getText();
+						}
+						parser.skipChildren();
+					}
+				} else if (pivotValue == null && token.isScalarValue()) {
+					pivotValue = parser.getText();
+				} else {
+					parser.skipChildren();
+				}
+			}
+			handler.accept(dn, pivotValue);
+		}
+	}
+
+	/**
+	 * List the objects of an entity with all the configured attributes in a single request.
+	 * The handler is called once per object with its dn and its LDAP values, keyed by
+	 * attribute name (case insensitive). Use {@link #toDetails} to map them to the configured attributes.
+	 */
+	public void getListWithAttributes(String entity, Optional<String> base, Optional<String> pivot,
+			Optional<String> computedFilter, FusionDirectoryAttributes attributes,
+			BiConsumer<String, Map<String, List<String>>> handler) throws LscServiceException {
+		Set<String> ldapAttributes = attributes.getLdapAttributes();
+		ldapAttributes.add(getPivotName(pivot));
+		getListWithAttributes(entity, base, computedFilter, ldapAttributes, handler);
+	}
+
+	/**
+	 * List the objects of an entity with the given LDAP attributes in a single request.
+	 */
+	public void getListWithAttributes(String entity, Optional<String> base, Optional<String> computedFilter,
+			Collection<String> ldapAttributes, BiConsumer<String, Map<String, List<String>>> handler)
+			throws LscServiceException {
+		getListWithAttributes(entity, base, computedFilter, ldapAttributes, handler, listTimeout);
+	}
+
+	private void getListWithAttributes(String entity, Optional<String> base, Optional<String> computedFilter,
+			Collection<String> ldapAttributes, BiConsumer<String, Map<String, List<String>>> handler, int timeout)
+			throws LscServiceException {
+		Response response = null;
+		try {
+			Target currentTarget = target.path(OBJECTS).path(entity);
+			if (base.isPresent()) {
+				currentTarget = currentTarget.queryParam("base", base.get());
+			}
+			if (computedFilter.isPresent()) {
+				currentTarget = currentTarget.queryParam("filter", computedFilter.get());
+			}
+			for (String ldapAttribute : ldapAttributes) {
+				currentTarget = currentTarget.queryParam("attrs[" + ldapAttribute + "]", "*");
+			}
+			LOGGER.debug(String.format("Search %s with attributes from: %s with filter %s ", entity,
+					currentTarget.getUri().toString(), computedFilter));
+			response = httpGet(FusionDirectoryMetrics.LIST, currentTarget, timeout);
+			try (InputStream body = response.getBody();
+					JsonParser parser = mapper.getFactory().createParser(body)) {
+				parseEntries(parser, handler);
+			}
+		} catch (IOException e) {
 			throw new LscServiceException(e);
 		} finally {
 			if (response != null) {
@@ -327,72 +630,274 @@ public class FusionDirectoryDao {
 		}
 	}
 
+	private static void parseEntries(JsonParser parser, BiConsumer<String, Map<String, List<String>>> handler)
+			throws IOException {
+		if (parser.nextToken() != JsonToken.START_OBJECT) {
+			// Empty result is sent as an empty array
+			parser.skipChildren();
+			return;
+		}
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String dn = parser.currentName();
+			Map<String, List<String>> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			if (parser.nextToken() == JsonToken.START_OBJECT) {
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String attribute = parser.currentName();
+					List<String> attributeValues = new ArrayList<>();
+					if (parser.nextToken() == JsonToken.START_ARRAY) {
+						while (parser.nextToken() != JsonToken.END_ARRAY) {
+							if (parser.currentToken().isScalarValue()) {
+								attributeValues.add(parser.getText());
+							}
+							parser.skipChildren();
+						}
+					} else if (parser.currentToken().isScalarValue()) {
+						attributeValues.add(parser.getText());
+					} else {
+						parser.skipChildren();
+					}
+					values.put(attribute, attributeValues);
+				}
+			} else {
+				parser.skipChildren();
+			}
+			handler.accept(dn, values);
+		}
+	}
+
+	/**
+	 * Read the configured attributes of an object from its LDAP attributes, with a single listing
+	 * request based on its dn instead of one request per tab.
+	 */
+	public Map<String, Object> getLdapDetails(String dn, String entity, FusionDirectoryAttributes attributes)
+			throws LscServiceException {
+		List<Map<String, List<String>>> found = new ArrayList<>();
+		getListWithAttributes(entity, Optional.of(dn), Optional.empty(), attributes.getLdapAttributes(),
+				(someDn, values) -> {
+					if (someDn.equalsIgnoreCase(dn)) {
+						found.add(values);
+					}
+				}, getTimeout(getDeadline(), dn));
+		if (found.isEmpty()) {
+			String errorMessage = String.format("Cannot find %s %s", entity, dn);
+			LOGGER.error(errorMessage);
+			throw new LscServiceException(errorMessage);
+		}
+		return toDetails(dn, found.get(0), attributes);
+	}
+
+	/**
+	 * Map LDAP values of an object to the configured attributes, the same way {@link #getDetails} does
+	 * with tab values. Attributes without values are considered unset.
+	 */
+	public Map<String, Object> toDetails(String dn, Map<String, List<String>> ldapValues,
+			FusionDirectoryAttributes attributes) {
+		Map<String, Object> results = new HashMap<>();
+		results.put(DN, dn);
+		for (AttributesTab attributesTab : attributes.getTabs()) {
+			for (MappedAttribute attribute : attributes.getAttributes(attributesTab)) {
+				List<String> values = ldapValues.get(attribute.getLdapName());
+				if (attribute.isOption()) {
+					results.put(attribute.getName(),
+							attribute.filterAndStripOption(values != null ? values : new ArrayList<>()));
+				} else if (attribute.isMultiple()) {
+					results.put(attribute.getName(), values != null ? values : new ArrayList<>());
+				} else if (values != null && !values.isEmpty() && !values.get(0).isEmpty()) {
+					results.put(attribute.getName(), values.get(0));
+				}
+			}
+		}
+		return results;
+	}
+
 	private static boolean checkResponse(Response response) {
-		return Response.Status.Family.familyOf(response.getStatus()) == Response.Status.Family.SUCCESSFUL;
+		return response.getStatus() / 100 == 2;
 	}
 
-	@SuppressWarnings("unchecked")
-	public Map<String, Object> getDetails(String dn, String entity, Attributes attributesSettings)
+	public Map<String, Object> getDetails(String dn, String entity, FusionDirectoryAttributes attributes)
 			throws LscServiceException {
+		return getDetails(dn, entity, attributes, 1);
+	}
+
+	/**
+	 * Read the configured attributes of an object, requesting up to tabConcurrency tabs at once.
+	 * Values are merged in the configured tabs order, whatever the order the tabs are received in.
+	 * Requests still pending when the object deadline expires are cancelled.
+	 */
+	public Map<String, Object> getDetails(String dn, String entity, FusionDirectoryAttributes attributes,
+			int tabConcurrency) throws LscServiceException {
 
 		Map<String, Object> results = new HashMap<>();
 		results.put(DN, dn);
 
-		// Check for inactive tabs before requesting them (if an inactive tab is
-		// requested, a 400 error is sent)
-		List<Tab> tabs = getEntityTabs(dn, entity);
+		long deadline = getDeadline();
+		List<AttributesTab> attributesTabs = attributes.getTabs();
+		List<Future<Optional<Map<String, Object>>>> pendingTabs = null;
+		if (tabConcurrency > 1 && attributesTabs.size() > 1) {
+			pendingTabs = submitTabs(dn, entity, attributesTabs, tabConcurrency, deadline);
+		}
+		try {
+			// Tabs are requested without checking first whether they are active: an inactive tab
+			// is answered with a 400 error, and only then the tab list is requested to tell
+			// inactive tabs from missing ones.
+			List<Tab> tabs = null;
+			for (int i = 0; i < attributesTabs.size(); i++) {
+				AttributesTab attributesTab = attributesTabs.get(i);
+				Optional<Map<String, Object>> tabValues = pendingTabs != null
+						? await(pendingTabs.get(i), deadline, dn)
+						: getTab(dn, entity, attributesTab, getTimeout(deadline, dn));
+				if (!tabValues.isPresent()) {
+					if (tabs == null) {
+						tabs = getEntityTabs(dn, entity, getTimeout(deadline, dn));
+					}
+					checkInactiveTab(tabs, attributesTab, dn, entity);
+					continue;
+				}
+				readTabValues(tabValues.get(), attributesTab, attributes.getAttributes(attributesTab), results);
+			}
+		} finally {
+			if (pendingTabs != null) {
+				pendingTabs.forEach(pendingTab -> pendingTab.cancel(true));
+			}
+		}
+		return results;
+	}
 
-		for (AttributesTab attributesTab : attributesSettings.getTab()) {
-			Optional<Tab> tab = tabs.stream().filter(p -> p.getClass_().equals(attributesTab.getName())).findFirst();
-			if (!tab.isPresent()) {
-				String errorMessage = String.format("Tab %s do not exists for object %s", attributesTab.getName(),
-						entity);
-				LOGGER.error(errorMessage);
-				throw new LscServiceException(errorMessage);
+	private Optional<Map<String, Object>> getTab(String dn, String entity, AttributesTab attributesTab,
+			int timeout) throws LscServiceException {
+		Target currentTarget = target.path(OBJECTS).path(entity).path(dn).path(attributesTab.getName());
+		Optional<Response> response = Optional.empty();
+		try {
+			response = httpGetTab(currentTarget, timeout);
+			if (!response.isPresent()) {
+				return Optional.empty();
 			}
-			if (tab.get().getActive()) {
-				WebTarget currentTarget = target.path(OBJECTS).path(entity).path(dn).path(attributesTab.getName());
-				Response response = null;
+			return Optional.of(mapper.readValue(response.get().readString(), TAB_VALUES_TYPE));
+		} catch (IOException e) {
+			throw new LscServiceException(e);
+		} finally {
+			if (response.isPresent()) {
+				response.get().close();
+			}
+		}
+	}
+
+	private List<Future<Optional<Map<String, Object>>>> submitTabs(String dn, String entity,
+			List<AttributesTab> attributesTabs, int tabConcurrency, long deadline) {
+		Semaphore permits = new Semaphore(tabConcurrency);
+		List<Future<Optional<Map<String, Object>>>> pendingTabs = new ArrayList<>();
+		for (AttributesTab attributesTab : attributesTabs) {
+			pendingTabs.add(executor.submit(() -> {
+				permits.acquire();
 				try {
-					response = httpGet(currentTarget);
-					Map<String, Object> raw = mapper.readValue(response.readEntity(String.class), Map.class);
-					for (Attribute attribute : attributesTab.getAttribute()) {
-						if (isOptionAttribute(attribute.getValue())) {
-							String shortAttributeName = stripOptionFromAttributeName(attribute.getValue());
-							Object rawValues = raw.get(shortAttributeName);
-							if (rawValues == null) {
-								throw new LscServiceException(String.format("Attribute %s could not be found in tab %s", shortAttributeName, attributesTab.getName()));
-							}
-							Object value = filterAndStripOptionFromValues(attribute.getValue(), rawValues);
-							if (value != null) {
-								results.put(attribute.getValue(), value);
-							}
-						} else {
-							Object value = raw.get(attribute.getValue());
-							if (value == null) {
-								throw new LscServiceException(String.format("Attribute %s could not be found in tab %s", attribute.getValue(), attributesTab.getName()));
-							}
-							// Empty string value are considered unset
-							if (value instanceof String && ((String)value).isEmpty()) {
-								continue;
-							}
-							// LscBean does not accept Long object
-							if (value instanceof Long) {
-								value = ((Long)value).toString();
-							}
-							results.put(attribute.getValue(), value);
-						}
-					}
-				} catch (JsonProcessingException e) {
-					throw new LscServiceException(e);
+					return getTab(dn, entity, attributesTab, getTimeout(deadline, dn));
 				} finally {
-					if (response != null) {
-						response.close();
-					}
+					permits.release();
+				}
+			}));
+		}
+		return pendingTabs;
+	}
+
+	/**
+	 * The System.nanoTime() at which reading an object must be over, or 0 without deadline.
+	 */
+	private long getDeadline() {
+		return objectDeadline > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(objectDeadline) : 0;
+	}
+
+	/**
+	 * The detail read timeout, shortened to what is left before the deadline.
+	 */
+	private int getTimeout(long deadline, String dn) throws LscServiceException {
+		if (deadline == 0) {
+			return detailTimeout;
+		}
+		long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+		if (left <= 0) {
+			throw deadlineExpired(dn);
+		}
+		return (int) Math.min(detailTimeout, left);
+	}
+
+	private LscServiceException deadlineExpired(String dn) {
+		String errorMessage = String.format("Cannot read %s within %d ms", dn, objectDeadline);
+		LOGGER.error(errorMessage);
+		return new LscServiceException(errorMessage);
+	}
+
+	private <T> T await(Future<T> pending, long deadline, String dn) throws LscServiceException {
+		if (deadline != 0) {
+			try {
+				pending.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				throw deadlineExpired(dn);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				// Reported below
+			}
+		}
+		return await(pending);
+	}
+
+	static <T> T await(Future<T> pending) throws LscServiceException {
+		try {
+			return pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LscServiceException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof LscServiceException) {
+				throw (LscServiceException) e.getCause();
+			} else if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new LscServiceException(e.getCause());
+		}
+	}
+
+	private static void checkInactiveTab(List<Tab> tabs, AttributesTab attributesTab, String dn, String entity)
+			throws LscServiceException {
+		Optional<Tab> tab = tabs.stream().filter(p -> p.getClass_().equals(attributesTab.getName())).findFirst();
+		if (!tab.isPresent()) {
+			String errorMessage = String.format("Tab %s do not exists for object %s", attributesTab.getName(),
+					entity);
+			LOGGER.error(errorMessage);
+			throw new LscServiceException(errorMessage);
+		}
+		if (tab.get().getActive()) {
+			String errorMessage = String.format("Cannot read tab %s of %s", attributesTab.getName(), dn);
+			LOGGER.error(errorMessage);
+			throw new LscServiceException(errorMessage);
+		}
+	}
+
+	private void readTabValues(Map<String, Object> raw, AttributesTab attributesTab,
+			List<MappedAttribute> tabAttributes, Map<String, Object> results) throws LscServiceException {
+		for (MappedAttribute attribute : tabAttributes) {
+			if (attribute.isOption()) {
+				Object rawValues = raw.get(attribute.getLdapName());
+				if (rawValues == null) {
+					throw new LscServiceException(String.format("Attribute %s could not be found in tab %s", attribute.getLdapName(), attributesTab.getName()));
+				}
+				results.put(attribute.getName(), attribute.filterAndStripOption(rawValues));
+			} else {
+				Object value = raw.get(attribute.getName());
+				if (value == null) {
+					throw new LscServiceException(String.format("Attribute %s could not be found in tab %s", attribute.getName(), attributesTab.getName()));
 				}
+				// Empty string value are considered unset
+				if (value instanceof String && ((String)value).isEmpty()) {
+					continue;
+				}
+				// LscBean does not accept Long object
+				if (value instanceof Long) {
+					value = ((Long)value).toString();
+				}
+				results.put(attribute.getName(), value);
 			}
 		}
-		return results;
 	}
 
 	public static boolean isOptionAttribute(String attribute) {
@@ -407,83 +912,125 @@ public class FusionDirectoryDao {
 		return attribute;
 	}
 
-	@SuppressWarnings("unchecked")
-	private List<String> filterAndStripOptionFromValues(String attribute, Object rawValues) {
-		Matcher mopt = PATTERN_ATTR_OPT.matcher(attribute);
-		List<String> values = new ArrayList<String>();
-		if (mopt.matches()) {
-			String option = mopt.group(2);
-			if (rawValues instanceof String
-					&& ((String) rawValues).toLowerCase().startsWith(option.toLowerCase() + ";")) {
-				values.add(((String) rawValues).replaceAll("(?i)" + option + ";", ""));
-			} else if (rawValues instanceof List<?>) {
-				for (Object rawValue : (List<Object>) rawValues) {
-					if (((String) rawValue).toLowerCase().startsWith(option.toLowerCase() + ";")) {
-						values.add(((String) rawValue).replaceAll("(?i)" + option + ";", ""));
-					}
-				}
-			}
-		}
-		return values;
+	public Optional<String> create(String entity, Map<String, Map<String, Object>> attributes, Optional<String> template)
+			throws LscServiceException {
+		return create(entity, attributes, template, null);
 	}
 
-	public boolean create(String entity, Map<String, Map<String, Object>> attributes, Optional<String> template)
-			throws LscServiceException {
+	/**
+	 * Create an object and return its dn, as sent back by FusionDirectory.
+	 * A failed create may still have created the object, so it is only sent again when
+	 * the lookup does not find the object. Without lookup, a create is never sent again.
+	 */
+	public Optional<String> create(String entity, Map<String, Map<String, Object>> attributes, Optional<String> template,
+			ObjectLookup lookup) throws LscServiceException {
 
 		Map<String, Object> payload = new HashMap<String, Object>();
 		payload.put("attrs", attributes);
 		if (template.isPresent()) {
 			payload.put("template", template.get());
 		}
-		WebTarget currentTarget = target.path(OBJECTS).path(entity);
+		Target currentTarget = target.path(OBJECTS).path(entity);
+		List<String> created = new ArrayList<>();
+		RetryCheck retryCheck = lookup == null ? null : () -> {
+			Optional<String> dn = lookup.findDn();
+			dn.ifPresent(created::add);
+			return !dn.isPresent();
+		};
 		Response response = null;
 		try {
-			response = httpPost(currentTarget, Entity.entity(payload, MediaType.APPLICATION_JSON));
-			response.readEntity(String.class);
+			response = send(FusionDirectoryMetrics.POST, FusionDirectoryHttp.POST, currentTarget, toJson(payload),
+					retryCheck, writeTimeout);
+			if (!checkResponse(response) && !created.isEmpty()) {
+				LOGGER.warn(String.format("Create of %s failed with status %d, but %s exists", entity,
+						response.getStatus(), created.get(0)));
+				return Optional.of(created.get(0));
+			}
+			response = checkedResponse(response);
+			JsonNode dn = mapper.readTree(readString(response));
+			return dn.isTextual() ? Optional.of(dn.textValue()) : Optional.empty();
+		} catch (LscServiceException e) {
+			if (!created.isEmpty()) {
+				LOGGER.warn(String.format("Create of %s failed (%s), but %s exists", entity, e, created.get(0)));
+				return Optional.of(created.get(0));
+			}
+			throw e;
+		} catch (JsonProcessingException e) {
+			LOGGER.debug(String.format("Cannot read created %s dn (%s)", entity, e));
+			return Optional.empty();
 		} finally {
 			if (response != null) {
 				response.close();
 			}
 		}
-
-		return true;
 	}
 
 	public boolean modify(String entity, String dn, Map<String, Map<String, Object>> updateAttributes,
 			List<String> deleteAttributes)
 			throws LscServiceException {
+		return modify(entity, dn, updateAttributes, deleteAttributes, false);
+	}
+
+	/**
+	 * Update an object, then delete the removed attributes with one request each, one after the other
+	 * unless concurrentDeletes is set. FusionDirectory locks an object while it is saved, so concurrent
+	 * deletions of a same object may fail.
+	 */
+	public boolean modify(String entity, String dn, Map<String, Map<String, Object>> updateAttributes,
+			List<String> deleteAttributes, boolean concurrentDeletes)
+			throws LscServiceException {
 
 		if (updateAttributes.size() > 0) {
-			WebTarget currentTarget = target.path(OBJECTS).path(entity).path(dn);
+			Target currentTarget = target.path(OBJECTS).path(entity).path(dn);
 			Response response = null;
 				try {
-					response = httpPatch(currentTarget, Entity.entity(updateAttributes, MediaType.APPLICATION_JSON));
+					response = httpPatch(currentTarget, updateAttributes);
 				} finally {
 					if (response != null) {
 						response.close();
 					}
 				}
 			}
-			// List<String> toDelete = prepareAttributesToDelete(modificationsItemsByHash);
-			for (String deleteAttr : deleteAttributes) {
-				Response response = null;
+			if (concurrentDeletes && deleteAttributes.size() > 1) {
+				List<Future<Void>> pendingDeletes = new ArrayList<>();
+				for (String deleteAttr : deleteAttributes) {
+					pendingDeletes.add(executor.submit(() -> {
+						deleteAttribute(entity, dn, deleteAttr);
+						return null;
+					}));
+				}
 				try {
-					WebTarget currentTarget = target.path(OBJECTS).path(entity).path(dn).path(deleteAttr);
-					response = httpDelete(currentTarget);
-					response.readEntity(String.class);
-				} finally {
-					if (response != null) {
-						response.close();
+					for (Future<Void> pendingDelete : pendingDeletes) {
+						await(pendingDelete);
 					}
+				} finally {
+					pendingDeletes.forEach(pendingDelete -> pendingDelete.cancel(true));
+				}
+			} else {
+				for (String deleteAttr : deleteAttributes) {
+					deleteAttribute(entity, dn, deleteAttr);
 				}
 			}
 			return true;
 
 	}
 
+	private void deleteAttribute(String entity, String dn, String deleteAttr) throws LscServiceException {
+		Response response = null;
+		try {
+			Target currentTarget = target.path(OBJECTS).path(entity).path(dn).path(deleteAttr);
+			response = httpDelete(currentTarget);
+			readString(response);
+		} finally {
+			if (response != null) {
+				response.close();
+			}
+		}
+	}
+
 	public boolean delete(String entity, String dn) throws LscServiceException {
 		LOGGER.debug(String.format("Deleting %s with dn=%s", entity, dn));
-		WebTarget currentTarget = target.path(OBJECTS).path(entity).path(dn);
+		Target currentTarget = target.path(OBJECTS).path(entity).path(dn);
 		Response response = null;
 		try {
 			response = httpDelete(currentTarget);
@@ -495,12 +1042,12 @@ public class FusionDirectoryDao {
 		return true;
 	}
 
-	private List<Tab> getEntityTabs(String dn, String entity) throws LscServiceException {
+	private List<Tab> getEntityTabs(String dn, String entity, int timeout) throws LscServiceException {
 		Response response = null;
 		try {
-			WebTarget currentTarget = target.path(OBJECTS).path(entity).path(dn);
-			response = httpGet(currentTarget);
-			return Arrays.asList(mapper.readValue(response.readEntity(String.class), Tab[].class));
+			Target currentTarget = target.path(OBJECTS).path(entity).path(dn);
+			response = httpGet(FusionDirectoryMetrics.TABS, currentTarget, timeout);
+			return Arrays.asList(mapper.readValue(readString(response), Tab[].class));
 		} catch (JsonProcessingException e) {
 			throw new LscServiceException(e);
 		} finally {
@@ -515,13 +1062,13 @@ public class FusionDirectoryDao {
 		ObjectMapper mapper = new ObjectMapper();
 		Response response = null;
 		try {
-			WebTarget currentTarget = target.path(OBJECTS).path(entity);
+			Target currentTarget = target.path(OBJECTS).path(entity);
 			currentTarget = currentTarget.queryParam("base", dn);
 			currentTarget = currentTarget.queryParam("attrs[" + attribute + "]", "*");
 
-			response = httpGet(currentTarget);
+			response = httpGet(FusionDirectoryMetrics.LIST, currentTarget, detailTimeout);
 
-			ObjectNode root = (ObjectNode) mapper.readTree(response.readEntity(String.class));
+			ObjectNode root = (ObjectNode) mapper.readTree(readString(response));
 			Iterator<Map.Entry<String, JsonNode>> iter = root.fields();
 			while (iter.hasNext()) {
 				Map.Entry<String, JsonNode> entry = iter.next();
@@ -546,10 +1093,10 @@ public class FusionDirectoryDao {
 	public void setAttribute(String entity, String dn, String tab, String attribute, List<String> values,
 			boolean isMultiple) throws LscServiceException {
 		Object payload = isMultiple ? values : "\"" + values.get(0) + "\"";
-		WebTarget currentTarget = target.path(OBJECTS).path(entity).path(dn).path(tab).path(attribute);
+		Target currentTarget = target.path(OBJECTS).path(entity).path(dn).path(tab).path(attribute);
 		Response response = null;
 		try {
-			response = httpPut(currentTarget, Entity.entity(payload, MediaType.APPLICATION_JSON));
+			response = httpPut(currentTarget, payload);
 		} finally {
 			if (response != null) {
 				response.close();
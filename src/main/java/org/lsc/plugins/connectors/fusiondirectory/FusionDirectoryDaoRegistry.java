@@ -0,0 +1,143 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+
+import org.lsc.plugins.connectors.fusiondirectory.generated.ServiceSettings;
+import org.lsc.plugins.connectors.fusiondirectory.generated.Transport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The DAOs shared by all the services connecting to the same FusionDirectory url, as the same
+ * user, in the same directory, with the same connection settings: services share their HTTP
+ * connections and sessions. Services with other connection settings get a DAO of their own.
+ * The DAO is closed, logging out from its sessions, when the last service using it is closed.
+ */
+final class FusionDirectoryDaoRegistry {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FusionDirectoryDaoRegistry.class);
+	private static final String DEFAULT = "default";
+
+	private static final Map<String, SharedDao> DAOS = new HashMap<>();
+
+	private static final class SharedDao {
+		private final FusionDirectoryDao dao;
+		private int references;
+
+		private SharedDao(FusionDirectoryDao dao) {
+			this.dao = dao;
+		}
+	}
+
+	private FusionDirectoryDaoRegistry() {
+	}
+
+	/**
+	 * Get the DAO of a connection, to be released when the service is closed.
+	 */
+	static synchronized FusionDirectoryDao acquire(String url, String username, String password,
+			ServiceSettings settings) {
+		String directory = Optional.ofNullable(settings.getDirectory()).filter(d -> !d.trim().isEmpty())
+				.orElse(DEFAULT);
+		String connection = url + "\n" + username + "\n" + directory + "\n";
+		String key = connection + getSettingsKey(password, settings);
+		SharedDao shared = DAOS.get(key);
+		if (shared == null) {
+			if (DAOS.keySet().stream().anyMatch(someKey -> someKey.startsWith(connection))) {
+				LOGGER.warn(String.format("Connection settings to %s as %s differ between services, "
+						+ "they do not share their connections and sessions", url, username));
+			}
+			shared = new SharedDao(new FusionDirectoryDao(url, username, password, settings));
+			DAOS.put(key, shared);
+		} else {
+			LOGGER.debug(String.format("Share FusionDirectory connection to %s as %s", url, username));
+		}
+		shared.references++;
+		return shared.dao;
+	}
+
+	/**
+	 * The settings a DAO is built with.
+	 */
+	private static String getSettingsKey(String password, ServiceSettings settings) {
+		Transport transport = settings.getTransport() != null ? settings.getTransport() : new Transport();
+		return String.join("\n", password, String.valueOf(settings.getSessionLifetime()),
+				String.valueOf(settings.getSessionPoolSize()), String.valueOf(settings.getMaxInFlight()),
+				String.valueOf(settings.getTargetLatency()), String.valueOf(settings.getRateLimit()),
+				String.valueOf(settings.getMaxRetries()), String.valueOf(settings.getRetryBackoff()),
+				transport.getClient(), String.valueOf(transport.isHttp2()),
+				String.valueOf(transport.getMaxConnections()), String.valueOf(transport.getIdleTimeout()),
+				String.valueOf(transport.getConnectTimeout()), String.valueOf(transport.getListTimeout()),
+				String.valueOf(transport.getDetailTimeout()), String.valueOf(transport.getWriteTimeout()),
+				String.valueOf(transport.getObjectDeadline()), String.valueOf(transport.isCompression()),
+				String.valueOf(transport.isCompressRequests()), String.valueOf(transport.getEjectAfter()),
+				String.valueOf(transport.getEjectionTime()));
+	}
+
+	/**
+	 * Release a DAO, closing it when no service uses it anymore.
+	 */
+	static void release(FusionDirectoryDao dao) {
+		synchronized (FusionDirectoryDaoRegistry.class) {
+			Iterator<SharedDao> iterator = DAOS.values().iterator();
+			SharedDao shared = null;
+			while (shared == null && iterator.hasNext()) {
+				SharedDao candidate = iterator.next();
+				if (candidate.dao == dao) {
+					shared = candidate;
+				}
+			}
+			if (shared == null || --shared.references > 0) {
+				return;
+			}
+			iterator.remove();
+		}
+		// Logging out may take a while, other connections are not blocked
+		dao.close();
+	}
+}
@@ -42,14 +42,24 @@
  */
 package org.lsc.plugins.connectors.fusiondirectory;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
 
 import org.lsc.LscDatasets;
+import org.lsc.LscModificationType;
 import org.lsc.LscModifications;
 import org.lsc.beans.IBean;
 import org.lsc.configuration.PluginConnectionType;
@@ -64,10 +74,21 @@ import org.slf4j.LoggerFactory;
 import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.WebApplicationException;
 
-public class FusionDirectoryDstService extends FusionDirectoryAbstractService implements IWritableService {
+public class FusionDirectoryDstService extends FusionDirectoryAbstractService implements IWritableService, Closeable {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(FusionDirectoryDstService.class);
 
+	// Writes are applied in the background when writeThreads is set
+	private FusionDirectoryWritePipeline writePipeline;
+
+	// Destination objects loaded on first getBean of each synchronization when snapshot is set
+	private FusionDirectorySnapshot snapshot;
+	private volatile boolean snapshotLoaded;
+	// Departments used to compute the base of objects read from LDAP attributes, loaded once per listing
+	private volatile List<String> bases;
+
+	private static final String DEPARTMENT = "DEPARTMENT";
+
 	@SuppressWarnings("unchecked")
 	public FusionDirectoryDstService(final TaskType task) throws LscServiceConfigurationException {
 
@@ -86,8 +107,8 @@ public class FusionDirectoryDstService extends FusionDirectoryAbstractService im
 						+ " connection settings inside task: " + task.getName());
 			}
 			beanClass = (Class<IBean>) Class.forName(task.getBean());
-			dao = new FusionDirectoryDao(connection.getUrl(), connection.getUsername(), connection.getPassword(),
-					settings.getSessionLifetime().intValue(), getStringParameter(settings.getDirectory()));
+			dao = FusionDirectoryDaoRegistry.acquire(connection.getUrl(), connection.getUsername(),
+					connection.getPassword(), settings);
 			this.entity = settings.getEntity();
 			this.pivot = getStringParameter(settings.getPivot());
 			this.base = getStringParameter(settings.getBase());
@@ -96,9 +117,40 @@ public class FusionDirectoryDstService extends FusionDirectoryAbstractService im
 			this.oneFilter = getStringParameter(settings.getOneFilter());
 			this.cleanFilter = getStringParameter(settings.getCleanFilter());
 			this.template = getStringParameter(settings.getTemplate());
-			this.attributesSettings = settings.getAttributes();
-
+			prepareFilters();
+			if (settings.getPartitions() != null) {
+				this.partitions = settings.getPartitions().getPartition();
+				this.partitionConcurrency = Math.max(1, settings.getPartitions().getConcurrency());
+			}
+			this.listMemoryBudget = settings.getListMemoryBudget().longValue() * 1024 * 1024;
+			this.spillDirectory = Paths.get(getStringParameter(settings.getSpillDirectory())
+					.orElse(System.getProperty("java.io.tmpdir")));
+			this.metricsFile = getStringParameter(settings.getMetricsFile());
+			this.attributes = new FusionDirectoryAttributes(settings.getAttributes());
+			this.tabConcurrency = settings.getTabConcurrency().intValue();
+			this.ldapAttributesDetails = isLdapAttributesDetailMode(settings.getDetailMode());
+			this.dnCache = newDnCache(settings.getDnCacheSize().intValue());
+			this.concurrentDeletes = settings.isConcurrentDeletes();
+			if (settings.getWriteThreads().intValue() > 0) {
+				writePipeline = new FusionDirectoryWritePipeline(settings.getWriteThreads().intValue(),
+						settings.getWriteQueueSize().intValue(), this::applyNow);
+			}
+			if (settings.isSnapshot()) {
+				if (oneFilter.isPresent()) {
+					LOGGER.warn("snapshot cannot be used along with oneFilter, ignored.");
+				} else {
+					snapshot = new FusionDirectorySnapshot(DN, attributes.getNames());
+				}
+			}
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					close();
+				} catch (IOException e) {
+					LOGGER.error(String.format("Error while closing the fusiondirectory service (%s)", e));
+				}
+			}));
 		} catch (Exception e) {
+			releaseDao();
 			throw new LscServiceConfigurationException(e);
 		}
 	}
@@ -107,23 +159,23 @@ public class FusionDirectoryDstService extends FusionDirectoryAbstractService im
 	public IBean getBean(String pivotValue, LscDatasets lscDatasets, boolean fromSameService) throws LscServiceException {
 		LOGGER.debug(String.format("Call to getBean(%s, %s, %b)", pivotValue, lscDatasets, fromSameService));
 		String pivotName = getPivotName();
+		if (writePipeline != null) {
+			writePipeline.await(pivotValue);
+		}
 		try {
+			if (snapshot != null) {
+				loadSnapshot();
+				if (isCoveredBySnapshot(lscDatasets)) {
+					return getBeanFromSnapshot(lscDatasets);
+				}
+			}
 			Optional<Entry<String, LscDatasets>> entity = findFirstByPivots(lscDatasets, false);
 			if (entity.isPresent()) {
 				String dn = entity.get().getValue().getStringValueAttribute(DN);
 				
 				Map<String, Object> details = getDetails(dn);
 				
-				IBean bean = beanClass.getDeclaredConstructor().newInstance();
-				bean.setMainIdentifier(entity.get().getValue().getStringValueAttribute(pivotName));
-				
-				LscDatasets datasets = new LscDatasets();
-				details.entrySet().stream().forEach(entry -> datasets.put(entry.getKey(),
-						entry.getValue() == null ? new LinkedHashSet<>() : entry.getValue()));
-				
-				bean.setDatasets(datasets);
-				
-				return bean;
+				return newBean(entity.get().getValue().getStringValueAttribute(pivotName), details);
 			} else {
 				return null;
 			}
@@ -138,8 +190,205 @@ public class FusionDirectoryDstService extends FusionDirectoryAbstractService im
 		}
 	}
 
+	/**
+	 * LDAP attributes have no base: it is computed from the object dn, as in snapshots.
+	 */
+	@Override
+	protected Map<String, Object> getDetails(String dn) throws LscServiceException {
+		Map<String, Object> details = super.getDetails(dn);
+		if (ldapAttributesDetails) {
+			Optional<String> baseAttribute = getBaseAttribute();
+			if (baseAttribute.isPresent()) {
+				details.put(baseAttribute.get(), getBase(dn, getBases()));
+			}
+		}
+		return details;
+	}
+
+	private Optional<String> getBaseAttribute() {
+		return attributes.getNames().stream().filter(BASE::equalsIgnoreCase).findFirst();
+	}
+
+	private List<String> getBases() throws LscServiceException {
+		List<String> someBases = bases;
+		if (someBases == null) {
+			synchronized (this) {
+				someBases = bases;
+				if (someBases == null) {
+					someBases = getDepartments();
+					bases = someBases;
+				}
+			}
+		}
+		return someBases;
+	}
+
+	private IBean newBean(String mainIdentifier, Map<String, Object> details)
+			throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+		IBean bean = beanClass.getDeclaredConstructor().newInstance();
+		bean.setMainIdentifier(mainIdentifier);
+		
+		LscDatasets datasets = new LscDatasets();
+		details.entrySet().stream().forEach(entry -> datasets.put(entry.getKey(),
+				entry.getValue() == null ? new LinkedHashSet<>() : entry.getValue()));
+		
+		bean.setDatasets(datasets);
+		
+		return bean;
+	}
+
+	private boolean isCoveredBySnapshot(LscDatasets lscDatasets) {
+		for (String somePivot : lscDatasets.getAttributesNames()) {
+			String pivotValue = lscDatasets.getStringValueAttribute(somePivot);
+			if (pivotValue != null && !snapshot.covers(pivotValue)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private IBean getBeanFromSnapshot(LscDatasets lscDatasets)
+			throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+		for (String somePivot : lscDatasets.getAttributesNames()) {
+			String pivotValue = lscDatasets.getStringValueAttribute(somePivot);
+			if (pivotValue != null && snapshot.contains(pivotValue)) {
+				String mainIdentifier = snapshot.getPivot(pivotValue);
+				Map<String, Object> details = snapshot.getDetails(pivotValue);
+				if (details != null) {
+					dnCache.put(mainIdentifier, snapshot.getDn(pivotValue));
+					return newBean(mainIdentifier, details);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Load all the destination objects with the configured attributes in a single request, searched
+	 * with the filter getBean looks objects up with.
+	 * Values are read from LDAP attributes, except base which is computed from the object dn.
+	 */
+	private synchronized void loadSnapshot() throws LscServiceException {
+		if (snapshotLoaded) {
+			return;
+		}
+		String pivotName = getPivotName();
+		Optional<String> baseAttribute = getBaseAttribute();
+		List<String> bases = baseAttribute.isPresent() ? getDepartments() : new ArrayList<>();
+		Set<String> ldapAttributes = attributes.getLdapAttributes();
+		ldapAttributes.remove(BASE);
+		ldapAttributes.add(pivotName);
+		listPartitions(filter, (partitionBase, partitionFilter) -> {
+			dao.getListWithAttributes(entity, partitionBase, partitionFilter, ldapAttributes, (dn, values) -> {
+				List<String> pivotValues = values.get(pivotName);
+				if (pivotValues == null || pivotValues.isEmpty()) {
+					LOGGER.warn(String.format("No %s value for %s, not added to the snapshot", pivotName, dn));
+					return;
+				}
+				Map<String, Object> details = dao.toDetails(dn, values, attributes);
+				baseAttribute.ifPresent(attribute -> details.put(attribute, getBase(dn, bases)));
+				if (snapshot.contains(pivotValues.get(0))) {
+					LOGGER.warn(String.format("%s %s found twice: %s and %s", pivotName, pivotValues.get(0),
+							snapshot.getDn(pivotValues.get(0)), dn));
+				}
+				snapshot.put(pivotValues.get(0), details);
+			});
+			return null;
+		});
+		LOGGER.info(String.format("Loaded a snapshot of %d fusiondirectory %s objects", snapshot.size(), entity));
+		snapshotLoaded = true;
+	}
+
+	/**
+	 * Load the snapshot again on the next getBean, so that each synchronization sees the current objects.
+	 */
+	private synchronized void resetSnapshot() {
+		if (snapshot != null) {
+			snapshot.clear();
+			snapshotLoaded = false;
+		}
+	}
+
+	/**
+	 * The FusionDirectory departments, and the directory root they are located in.
+	 */
+	private List<String> getDepartments() throws LscServiceException {
+		List<String> departments = new ArrayList<>();
+		dao.getList(DEPARTMENT, Optional.empty(), Optional.empty(), Optional.empty(), (dn, pivotValue) -> {
+			departments.add(dn);
+		});
+		List<String> bases = new ArrayList<>(departments);
+		for (String department : departments) {
+			String parent = getParent(department);
+			if (parent != null && bases.stream().noneMatch(parent::equalsIgnoreCase)) {
+				bases.add(parent);
+			}
+		}
+		return bases;
+	}
+
+	/**
+	 * The base of an object is the deepest department holding it, e.g. ou=people,ou=department,dc=example,dc=com
+	 * is in base ou=department,dc=example,dc=com. Without departments, the object branch is stripped from the dn.
+	 */
+	private static String getBase(String dn, List<String> bases) {
+		String parent = getParent(dn);
+		if (parent == null) {
+			return null;
+		}
+		String lowerCaseParent = parent.toLowerCase(Locale.ROOT);
+		Optional<String> department = bases.stream()
+				.filter(base -> lowerCaseParent.equals(base.toLowerCase(Locale.ROOT))
+						|| lowerCaseParent.endsWith("," + base.toLowerCase(Locale.ROOT)))
+				.max((first, second) -> Integer.compare(first.length(), second.length()));
+		return department.orElseGet(() -> getParent(parent));
+	}
+
+	private static String getParent(String dn) {
+		try {
+			LdapName name = new LdapName(dn);
+			return name.size() > 1 ? name.getPrefix(name.size() - 1).toString() : null;
+		} catch (InvalidNameException e) {
+			LOGGER.warn(String.format("Invalid dn %s (%s)", dn, e));
+			return null;
+		}
+	}
+
+	@Override
+	public Map<String, LscDatasets> getListPivots() throws LscServiceException {
+		// Objects still being written would be missing from the list
+		flushWrites();
+		bases = null;
+		resetSnapshot();
+		return super.getListPivots();
+	}
+
 	@Override
 	public boolean apply(LscModifications lm) throws LscServiceException {
+		if (writePipeline != null && lm.getOperation() != LscModificationType.CHANGE_ID) {
+			LOGGER.debug("Queueing fusiondirectory " + lm.getOperation() + " of " + lm.getMainIdentifier());
+			writePipeline.submit(lm);
+			return true;
+		}
+		return applyNow(lm);
+	}
+
+	/**
+	 * Apply a modification, recording how long it took in the connection metrics.
+	 */
+	private boolean applyNow(LscModifications lm) throws LscServiceException {
+		long start = System.nanoTime();
+		boolean applied = false;
+		try {
+			applied = write(lm);
+			return applied;
+		} finally {
+			dao.getMetrics().applied(lm.getOperation().name().toLowerCase(Locale.ROOT), applied,
+					System.nanoTime() - start);
+		}
+	}
+
+	private boolean write(LscModifications lm) throws LscServiceException {
 		try {
 			switch(lm.getOperation()) {
 			case CHANGE_ID:
@@ -148,13 +397,19 @@ public class FusionDirectoryDstService extends FusionDirectoryAbstractService im
 				return true;
 			case CREATE_OBJECT:
 				LOGGER.debug("Creating fusiondirectory object with: " + lm.getModificationsItemsByHash());
-				return create(lm.getModificationsItemsByHash());
+				invalidateSnapshot(lm.getMainIdentifier());
+				return create(lm.getMainIdentifier(), lm.getModificationsItemsByHash());
 			case UPDATE_OBJECT:
 				LOGGER.debug("Modifying fusiondirectory object: " + lm.getMainIdentifier() + " with: " + lm.getModificationsItemsByHash());
+				invalidateSnapshot(lm.getMainIdentifier());
 				return modify(lm.getMainIdentifier(), lm.getModificationsItemsByHash());
 			case DELETE_OBJECT:
 				LOGGER.debug("Deleting fusiondirectory object: " + lm.getMainIdentifier());
-				return delete(lm.getMainIdentifier());
+				boolean deleted = delete(lm.getMainIdentifier());
+				if (deleted && snapshot != null && lm.getMainIdentifier() != null) {
+					snapshot.remove(lm.getMainIdentifier());
+				}
+				return deleted;
 			default:
 				LOGGER.error(String.format("Unknown operation %s", lm.getOperation()));
 				return false;
@@ -166,9 +421,53 @@ public class FusionDirectoryDstService extends FusionDirectoryAbstractService im
 		}
 	}
 
+	/**
+	 * Drop a written object from the snapshot, so that it is read again.
+	 */
+	private void invalidateSnapshot(String mainIdentifier) {
+		if (snapshot != null && mainIdentifier != null) {
+			snapshot.invalidate(mainIdentifier);
+		}
+	}
+
+	/**
+	 * Wait for the queued writes. Failed writes are logged when they happen, and fail here.
+	 */
+	private void flushWrites() throws LscServiceException {
+		if (writePipeline != null) {
+			checkWrites(writePipeline.flush());
+		}
+	}
+
+	private static void checkWrites(List<String> failed) throws LscServiceException {
+		if (!failed.isEmpty()) {
+			throw new LscServiceException(String.format("%d fusiondirectory writes failed: %s", failed.size(),
+					String.join(", ", failed)));
+		}
+	}
+
+	/**
+	 * Apply the queued writes and stop the writers, failing when some of the writes failed
+	 * since the last flush.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (writePipeline != null) {
+				checkWrites(writePipeline.close());
+			}
+		} catch (LscServiceException e) {
+			throw new IOException(e.getMessage(), e);
+		} finally {
+			closeListings();
+			writeMetrics();
+			releaseDao();
+		}
+	}
+
 	@Override
 	public List<String> getWriteDatasetIds() {
-		return getAttributes().getString();
+		return attributes.getNames();
 	}
 
 }
@@ -0,0 +1,205 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.lsc.plugins.connectors.fusiondirectory.FusionDirectoryHttp.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The FusionDirectory REST endpoints of a connection, each with its own sessions.
+ * Requests go to the endpoint with the fewest outstanding requests. An endpoint failing
+ * ejectAfter requests in a row is left aside for ejectionTime milliseconds, unless all are.
+ */
+class FusionDirectoryEndpoints {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FusionDirectoryEndpoints.class);
+
+	private final List<Endpoint> endpoints;
+	private final int ejectAfter;
+	private final long ejectionTime;
+	private final AtomicInteger next = new AtomicInteger();
+
+	static final class Endpoint {
+		private final String url;
+		private final FusionDirectorySessionPool sessions;
+		private final AtomicInteger outstanding = new AtomicInteger();
+		private final AtomicInteger failures = new AtomicInteger();
+		private volatile long ejectedUntil;
+		private volatile boolean ejected;
+
+		private Endpoint(String url, FusionDirectorySessionPool sessions) {
+			this.url = url;
+			this.sessions = sessions;
+		}
+
+		String getUrl() {
+			return url;
+		}
+
+		FusionDirectorySessionPool getSessions() {
+			return sessions;
+		}
+
+		/**
+		 * Count a request as outstanding until its response is closed, or until {@link #end()}
+		 * when it fails.
+		 */
+		void begin() {
+			outstanding.incrementAndGet();
+		}
+
+		void end() {
+			outstanding.decrementAndGet();
+		}
+
+		Response track(Response response) {
+			return Response.onClose(response, this::end);
+		}
+	}
+
+	/**
+	 * @param urls the endpoint urls
+	 * @param sessionsFactory creates the session pool of an endpoint url
+	 */
+	FusionDirectoryEndpoints(List<String> urls, Function<String, FusionDirectorySessionPool> sessionsFactory,
+			int ejectAfter, int ejectionTime) {
+		List<Endpoint> someEndpoints = new ArrayList<>();
+		for (String url : urls) {
+			someEndpoints.add(new Endpoint(url, sessionsFactory.apply(url)));
+		}
+		this.endpoints = Collections.unmodifiableList(someEndpoints);
+		this.ejectAfter = ejectAfter;
+		this.ejectionTime = TimeUnit.MILLISECONDS.toNanos(ejectionTime);
+	}
+
+	/**
+	 * Split a connection url holding several endpoint urls, separated by spaces or commas.
+	 */
+	static List<String> parseUrls(String url) {
+		List<String> urls = new ArrayList<>();
+		for (String someUrl : url.trim().split("[\\s,]+")) {
+			if (!someUrl.isEmpty()) {
+				urls.add(someUrl);
+			}
+		}
+		if (urls.isEmpty()) {
+			throw new IllegalArgumentException("No FusionDirectory url");
+		}
+		return urls;
+	}
+
+	List<Endpoint> getEndpoints() {
+		return endpoints;
+	}
+
+	/**
+	 * The endpoint with the fewest outstanding requests, ties broken in turn.
+	 */
+	Endpoint select() {
+		if (endpoints.size() == 1) {
+			return endpoints.get(0);
+		}
+		long now = System.nanoTime();
+		int start = Math.floorMod(next.getAndIncrement(), endpoints.size());
+		Endpoint best = null;
+		Endpoint soonestBack = null;
+		for (int i = 0; i < endpoints.size(); i++) {
+			Endpoint endpoint = endpoints.get((start + i) % endpoints.size());
+			if (isEjected(endpoint, now)) {
+				if (soonestBack == null || endpoint.ejectedUntil - soonestBack.ejectedUntil < 0) {
+					soonestBack = endpoint;
+				}
+			} else if (best == null || endpoint.outstanding.get() < best.outstanding.get()) {
+				best = endpoint;
+			}
+		}
+		return best != null ? best : soonestBack;
+	}
+
+	private boolean isEjected(Endpoint endpoint, long now) {
+		if (!endpoint.ejected) {
+			return false;
+		}
+		if (endpoint.ejectedUntil - now > 0) {
+			return true;
+		}
+		endpoint.ejected = false;
+		LOGGER.info(String.format("FusionDirectory endpoint %s is used again", endpoint.url));
+		return false;
+	}
+
+	void succeeded(Endpoint endpoint) {
+		endpoint.failures.set(0);
+	}
+
+	/**
+	 * Count a failed request: the server did not answer or answered it is overloaded.
+	 */
+	void failed(Endpoint endpoint) {
+		if (endpoints.size() == 1 || ejectAfter <= 0) {
+			return;
+		}
+		if (endpoint.failures.incrementAndGet() >= ejectAfter && !endpoint.ejected) {
+			endpoint.failures.set(0);
+			endpoint.ejectedUntil = System.nanoTime() + ejectionTime;
+			endpoint.ejected = true;
+			LOGGER.warn(String.format("FusionDirectory endpoint %s failed %d times in a row, not used for %d ms",
+					endpoint.url, ejectAfter, TimeUnit.NANOSECONDS.toMillis(ejectionTime)));
+		}
+	}
+
+	/**
+	 * Log out from the sessions of all endpoints.
+	 */
+	void close() {
+		endpoints.forEach(endpoint -> endpoint.sessions.close());
+	}
+}
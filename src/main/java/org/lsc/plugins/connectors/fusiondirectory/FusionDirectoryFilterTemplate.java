@@ -0,0 +1,131 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.lsc.LscDatasets;
+
+/**
+ * A filter with {attribute} placeholders, like oneFilter or cleanFilter, parsed once.
+ * Placeholders are replaced by the escaped value of the matching pivot attribute (case insensitive),
+ * and kept as is when there is no such pivot attribute.
+ */
+class FusionDirectoryFilterTemplate {
+
+	private final String[] literals;
+	private final String[] placeholders;
+	private final int length;
+
+	FusionDirectoryFilterTemplate(String filter) {
+		List<String> someLiterals = new ArrayList<>();
+		List<String> somePlaceholders = new ArrayList<>();
+		int start = 0;
+		int open = filter.indexOf('{');
+		while (open >= 0) {
+			int close = filter.indexOf('}', open + 1);
+			if (close < 0) {
+				break;
+			}
+			someLiterals.add(filter.substring(start, open));
+			somePlaceholders.add(filter.substring(open + 1, close));
+			start = close + 1;
+			open = filter.indexOf('{', start);
+		}
+		someLiterals.add(filter.substring(start));
+		this.literals = someLiterals.toArray(new String[0]);
+		this.placeholders = somePlaceholders.toArray(new String[0]);
+		this.length = filter.length();
+	}
+
+	String render(LscDatasets pivots) {
+		List<String> pivotNames = pivots.getAttributesNames();
+		StringBuilder rendered = new StringBuilder(length + 16 * placeholders.length);
+		for (int i = 0; i < placeholders.length; i++) {
+			rendered.append(literals[i]);
+			String value = null;
+			for (String pivotName : pivotNames) {
+				if (pivotName.equalsIgnoreCase(placeholders[i])) {
+					value = pivots.getStringValueAttribute(pivotName);
+					break;
+				}
+			}
+			if (value != null) {
+				appendEscaped(rendered, value);
+			} else {
+				rendered.append('{').append(placeholders[i]).append('}');
+			}
+		}
+		return rendered.append(literals[placeholders.length]).toString();
+	}
+
+	/**
+	 * Append a value escaped for an LDAP filter (RFC 4515).
+	 */
+	static StringBuilder appendEscaped(StringBuilder filter, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '\\':
+				filter.append("\\5c");
+				break;
+			case '*':
+				filter.append("\\2a");
+				break;
+			case '(':
+				filter.append("\\28");
+				break;
+			case ')':
+				filter.append("\\29");
+				break;
+			case '\0':
+				filter.append("\\00");
+				break;
+			default:
+				filter.append(c);
+			}
+		}
+		return filter;
+	}
+}
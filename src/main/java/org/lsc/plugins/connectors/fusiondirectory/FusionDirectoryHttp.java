@@ -0,0 +1,245 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The HTTP client used by {@link FusionDirectoryDao} to call the FusionDirectory REST API.
+ * Request bodies are sent as JSON, already serialized by the DAO.
+ */
+interface FusionDirectoryHttp extends Closeable {
+
+	String GET = "GET";
+	String POST = "POST";
+	String PUT = "PUT";
+	String PATCH = "PATCH";
+	String DELETE = "DELETE";
+
+	String SESSION_TOKEN = "Session-Token";
+	String APPLICATION_JSON = "application/json";
+	String GZIP = "gzip";
+	String DEFLATE = "deflate";
+
+	/**
+	 * Send a request. Failures to connect or to read the response are thrown as IOException.
+	 *
+	 * @param sessionToken the session token, or null
+	 * @param body the JSON request body, or null
+	 * @param acceptJson whether to ask for a JSON response
+	 * @param timeout the milliseconds to wait for the response, 0 for no limit
+	 */
+	Response send(String method, Target target, String sessionToken, byte[] body, boolean acceptJson,
+			int timeout) throws IOException, InterruptedException;
+
+	@Override
+	void close();
+
+	/**
+	 * A response, to be closed once read.
+	 */
+	interface Response extends Closeable {
+		int getStatus();
+
+		InputStream getBody() throws IOException;
+
+		default String readString() throws IOException {
+			try (InputStream body = getBody()) {
+				return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+			}
+		}
+
+		@Override
+		void close();
+
+		/**
+		 * A response already read.
+		 */
+		static Response of(int status, byte[] body) {
+			return new Response() {
+				@Override
+				public int getStatus() {
+					return status;
+				}
+
+				@Override
+				public InputStream getBody() {
+					return new ByteArrayInputStream(body);
+				}
+
+				@Override
+				public void close() {
+					// Nothing to release
+				}
+			};
+		}
+
+		/**
+		 * The same response, running an action once when it is closed.
+		 */
+		static Response onClose(Response response, Runnable action) {
+			AtomicBoolean closed = new AtomicBoolean();
+			return new Response() {
+				@Override
+				public int getStatus() {
+					return response.getStatus();
+				}
+
+				@Override
+				public InputStream getBody() throws IOException {
+					return response.getBody();
+				}
+
+				@Override
+				public String readString() throws IOException {
+					return response.readString();
+				}
+
+				@Override
+				public void close() {
+					try {
+						response.close();
+					} finally {
+						if (closed.compareAndSet(false, true)) {
+							action.run();
+						}
+					}
+				}
+			};
+		}
+	}
+
+	/**
+	 * An URL below the REST endpoint: path segments and query parameters, not encoded yet.
+	 */
+	final class Target {
+		private final String url;
+		private final List<String> path;
+		private final List<String[]> query;
+
+		Target(String url) {
+			this(url, Collections.emptyList(), Collections.emptyList());
+		}
+
+		private Target(String url, List<String> path, List<String[]> query) {
+			this.url = url;
+			this.path = path;
+			this.query = query;
+		}
+
+		Target path(String segment) {
+			List<String> newPath = new ArrayList<>(path);
+			newPath.add(segment);
+			return new Target(url, newPath, query);
+		}
+
+		Target queryParam(String name, String value) {
+			List<String[]> newQuery = new ArrayList<>(query);
+			newQuery.add(new String[] { name, value });
+			return new Target(url, path, newQuery);
+		}
+
+		/**
+		 * Same path and query on another base url.
+		 */
+		Target withUrl(String newUrl) {
+			return new Target(newUrl, path, query);
+		}
+
+		String getUrl() {
+			return url;
+		}
+
+		List<String> getPath() {
+			return path;
+		}
+
+		List<String[]> getQuery() {
+			return query;
+		}
+
+		URI getUri() {
+			StringBuilder uri = new StringBuilder(url);
+			for (String segment : path) {
+				if (uri.length() == 0 || uri.charAt(uri.length() - 1) != '/') {
+					uri.append('/');
+				}
+				encode(uri, segment, "/=");
+			}
+			char separator = '?';
+			for (String[] parameter : query) {
+				uri.append(separator);
+				encode(uri, parameter[0], "");
+				uri.append('=');
+				encode(uri, parameter[1], "");
+				separator = '&';
+			}
+			return URI.create(uri.toString());
+		}
+
+		/**
+		 * Percent-encode a value, keeping RFC 3986 unreserved characters, ",;:@" and the allowed characters.
+		 */
+		private static void encode(StringBuilder uri, String value, String allowed) {
+			for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+				char c = (char) (b & 0xff);
+				if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+						|| "-._~,;:@".indexOf(c) >= 0 || allowed.indexOf(c) >= 0) {
+					uri.append(c);
+				} else {
+					uri.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xf, 16)))
+							.append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.lsc.plugins.connectors.fusiondirectory.generated.Transport;
+
+/**
+ * HTTP client based on java.net.http, lighter to start than Jersey. HTTP/2 is used when enabled
+ * and negotiated by the server. The number of requests at once is bounded by maxConnections,
+ * idle connections are closed after the jdk.httpclient.keepalive.timeout system property.
+ * Compressed responses are decoded while read.
+ * The request timeout of java.net.http only covers waiting for the response headers: a watchdog
+ * also closes the response body when a read of the body waits longer than the timeout, as the socket
+ * read timeout of Jersey does, so that a server stalling in the middle of a body does not block forever.
+ */
+class FusionDirectoryJdkHttp implements FusionDirectoryHttp {
+
+	private final HttpClient client;
+	private final ScheduledThreadPoolExecutor watchdog;
+	private final Semaphore connections;
+	private final boolean compression;
+	private final boolean compressRequests;
+
+	FusionDirectoryJdkHttp(Transport transport) {
+		HttpClient.Builder builder = HttpClient.newBuilder()
+				.version(transport.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1);
+		if (transport.getConnectTimeout() > 0) {
+			builder.connectTimeout(Duration.ofMillis(transport.getConnectTimeout()));
+		}
+		client = builder.build();
+		watchdog = new ScheduledThreadPoolExecutor(1,
+				runnable -> Thread.ofPlatform().daemon().name("fusiondirectory-read-watchdog").unstarted(runnable));
+		watchdog.setRemoveOnCancelPolicy(true);
+		connections = new Semaphore(Math.max(1, transport.getMaxConnections()));
+		compression = transport.isCompression();
+		compressRequests = compression && transport.isCompressRequests();
+	}
+
+	@Override
+	public Response send(String method, Target target, String sessionToken, byte[] body, boolean acceptJson,
+			int timeout) throws IOException, InterruptedException {
+		if (body != null && compressRequests) {
+			body = gzip(body);
+		}
+		HttpRequest.Builder request = HttpRequest.newBuilder(target.getUri()).method(method,
+				body != null ? HttpRequest.BodyPublishers.ofByteArray(body) : HttpRequest.BodyPublishers.noBody());
+		if (body != null) {
+			request.header("Content-Type", APPLICATION_JSON);
+			if (compressRequests) {
+				request.header("Content-Encoding", GZIP);
+			}
+		}
+		if (compression) {
+			request.header("Accept-Encoding", GZIP + ", " + DEFLATE);
+		}
+		if (sessionToken != null) {
+			request.header(SESSION_TOKEN, sessionToken);
+		}
+		if (acceptJson) {
+			request.header("Accept", APPLICATION_JSON);
+		}
+		if (timeout > 0) {
+			request.timeout(Duration.ofMillis(timeout));
+		}
+		connections.acquire();
+		try {
+			return new JdkResponse(client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream()), timeout);
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			connections.release();
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() {
+		client.close();
+		watchdog.shutdownNow();
+	}
+
+	private static byte[] gzip(byte[] body) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+		try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+			out.write(body);
+		}
+		return compressed.toByteArray();
+	}
+
+	private static InputStream decode(InputStream body, String encoding) throws IOException {
+		if (GZIP.equalsIgnoreCase(encoding)) {
+			return new GZIPInputStream(body);
+		} else if (DEFLATE.equalsIgnoreCase(encoding)) {
+			// Deflate is meant to be zlib wrapped, but some servers send raw deflate data
+			BufferedInputStream buffered = new BufferedInputStream(body);
+			buffered.mark(2);
+			int first = buffered.read();
+			int second = buffered.read();
+			buffered.reset();
+			boolean zlib = first >= 0 && second >= 0 && (first & 0x0f) == 8 && ((first << 8) | second) % 31 == 0;
+			Inflater inflater = new Inflater(!zlib);
+			return new InflaterInputStream(buffered, inflater) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						inflater.end();
+					}
+				}
+			};
+		}
+		return body;
+	}
+
+	/**
+	 * Closes the stream when a read waits longer than the timeout, and reports it as a timeout.
+	 */
+	private final class TimedInputStream extends FilterInputStream {
+		private final int timeout;
+		private volatile boolean timedOut;
+
+		private TimedInputStream(InputStream in, int timeout) {
+			super(in);
+			this.timeout = timeout;
+		}
+
+		@Override
+		public int read() throws IOException {
+			ScheduledFuture<?> alarm = arm();
+			try {
+				return checkTimeout(super.read());
+			} catch (IOException e) {
+				throw timedOut ? timeoutException() : e;
+			} finally {
+				alarm.cancel(false);
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			ScheduledFuture<?> alarm = arm();
+			try {
+				return checkTimeout(super.read(b, off, len));
+			} catch (IOException e) {
+				throw timedOut ? timeoutException() : e;
+			} finally {
+				alarm.cancel(false);
+			}
+		}
+
+		private ScheduledFuture<?> arm() throws IOException {
+			if (timedOut) {
+				throw timeoutException();
+			}
+			return watchdog.schedule(() -> {
+				timedOut = true;
+				try {
+					in.close();
+				} catch (IOException e) {
+					// The connection is dropped anyway
+				}
+			}, timeout, TimeUnit.MILLISECONDS);
+		}
+
+		// A closed body may look like its end
+		private int checkTimeout(int read) throws IOException {
+			if (timedOut) {
+				throw timeoutException();
+			}
+			return read;
+		}
+
+		private IOException timeoutException() {
+			return new HttpTimeoutException(String.format("No response data received for %d ms", timeout));
+		}
+	}
+
+	/**
+	 * Holds a connection permit until closed.
+	 */
+	private final class JdkResponse implements Response {
+		private final HttpResponse<InputStream> response;
+		private final int timeout;
+		private final AtomicBoolean closed = new AtomicBoolean();
+		// Decoded body, ending its inflater when closed
+		private volatile InputStream body;
+
+		private JdkResponse(HttpResponse<InputStream> response, int timeout) {
+			this.response = response;
+			this.timeout = timeout;
+		}
+
+		@Override
+		public int getStatus() {
+			return response.statusCode();
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			InputStream raw = timeout > 0 ? new TimedInputStream(response.body(), timeout) : response.body();
+			body = decode(raw, response.headers().firstValue("Content-Encoding").orElse(null));
+			return new FilterInputStream(body) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						JdkResponse.this.close();
+					}
+				}
+			};
+		}
+
+		@Override
+		public void close() {
+			if (closed.compareAndSet(false, true)) {
+				try {
+					// Closing the decoded body also closes the response body
+					(body != null ? body : response.body()).close();
+				} catch (IOException e) {
+					// The connection is dropped
+				} finally {
+					connections.release();
+				}
+			}
+		}
+	}
+}
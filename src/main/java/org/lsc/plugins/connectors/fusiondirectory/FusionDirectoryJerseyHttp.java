@@ -0,0 +1,177 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.JerseyClientBuilder;
+import org.glassfish.jersey.client.filter.EncodingFilter;
+import org.glassfish.jersey.jdk.connector.JdkConnectorProperties;
+import org.glassfish.jersey.jdk.connector.JdkConnectorProvider;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
+import org.lsc.plugins.connectors.fusiondirectory.generated.Transport;
+
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.Invocation;
+import jakarta.ws.rs.client.WebTarget;
+
+/**
+ * HTTP client based on Jersey.
+ */
+class FusionDirectoryJerseyHttp implements FusionDirectoryHttp {
+
+	private final Client client;
+	// Base target of each endpoint url and read timeout. Setting a property on a target gives it its own
+	// runtime and connection pool, so it is done once per timeout instead of on each request.
+	private final Map<String, WebTarget> targets = new ConcurrentHashMap<>();
+	private final Set<Integer> timeouts;
+	private final int detailTimeout;
+
+	FusionDirectoryJerseyHttp(Transport transport) {
+		// Use JdkConnectorProvider to support PATCH HTTP method on Java 17
+		// See https://github.com/eclipse-ee4j/jersey/issues/4825
+		// Read timeouts are set per operation class
+		ClientConfig clientConfig = new ClientConfig();
+		clientConfig.connectorProvider(new JdkConnectorProvider())
+				.property(ClientProperties.CONNECT_TIMEOUT, transport.getConnectTimeout())
+				.property(ClientProperties.READ_TIMEOUT, transport.getDetailTimeout())
+				.property(JdkConnectorProperties.MAX_CONNECTIONS_PER_DESTINATION, transport.getMaxConnections())
+				.property(JdkConnectorProperties.CONNECTION_IDLE_TIMEOUT, transport.getIdleTimeout());
+		if (transport.isCompression()) {
+			// Responses are decoded while read
+			clientConfig.register(EncodingFilter.class).register(GZipEncoder.class).register(DeflateEncoder.class);
+			if (transport.isCompressRequests()) {
+				clientConfig.property(ClientProperties.USE_ENCODING, GZIP);
+			}
+		}
+		client = new JerseyClientBuilder().withConfig(clientConfig).build();
+		// Set.of rejects duplicates, timeouts are often equal
+		timeouts = new HashSet<>(Arrays.asList(transport.getListTimeout(), transport.getDetailTimeout(),
+				transport.getWriteTimeout()));
+		detailTimeout = transport.getDetailTimeout();
+	}
+
+	/**
+	 * The configured read timeout to use. Other timeouts are the time left before an object deadline,
+	 * which the DAO enforces itself, so the detail timeout is used for them.
+	 */
+	private int readTimeout(int timeout) {
+		return timeouts.contains(timeout) ? timeout : detailTimeout;
+	}
+
+	@Override
+	public Response send(String method, Target requestTarget, String sessionToken, byte[] body, boolean acceptJson,
+			int timeout) throws IOException {
+		int readTimeout = readTimeout(timeout);
+		WebTarget webTarget = targets.computeIfAbsent(requestTarget.getUrl() + "\n" + readTimeout,
+				key -> client.target(requestTarget.getUrl()).property(ClientProperties.READ_TIMEOUT, readTimeout));
+		for (String segment : requestTarget.getPath()) {
+			webTarget = webTarget.path(segment);
+		}
+		for (String[] parameter : requestTarget.getQuery()) {
+			webTarget = webTarget.queryParam(parameter[0], parameter[1]);
+		}
+		Invocation.Builder request = webTarget.request();
+		if (sessionToken != null) {
+			request = request.header(SESSION_TOKEN, sessionToken);
+		}
+		if (acceptJson) {
+			request = request.accept(APPLICATION_JSON);
+		}
+		try {
+			jakarta.ws.rs.core.Response response = body != null
+					? request.method(method, Entity.entity(body, APPLICATION_JSON))
+					: request.method(method);
+			return new JerseyResponse(response);
+		} catch (ProcessingException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() {
+		client.close();
+	}
+
+	private static final class JerseyResponse implements Response {
+		private final jakarta.ws.rs.core.Response response;
+
+		private JerseyResponse(jakarta.ws.rs.core.Response response) {
+			this.response = response;
+		}
+
+		@Override
+		public int getStatus() {
+			return response.getStatus();
+		}
+
+		@Override
+		public InputStream getBody() {
+			return response.readEntity(InputStream.class);
+		}
+
+		@Override
+		public String readString() {
+			return response.readEntity(String.class);
+		}
+
+		@Override
+		public void close() {
+			response.close();
+		}
+	}
+}
@@ -0,0 +1,375 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.lsc.plugins.connectors.fusiondirectory.FusionDirectoryHttp.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Metrics of the requests sent to FusionDirectory through a DAO and of the modifications applied with it.
+ * They are exposed through JMX while the DAO is open, and may be written in Prometheus text format.
+ */
+class FusionDirectoryMetrics implements FusionDirectoryMetricsMXBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FusionDirectoryMetrics.class);
+
+	static final String LOGIN = "login";
+	static final String LOGOUT = "logout";
+	static final String LIST = "list";
+	static final String TABS = "tabs";
+	static final String TAB = "tab";
+	static final String POST = "post";
+	static final String PATCH = "patch";
+	static final String PUT = "put";
+	static final String DELETE = "delete";
+
+	static final String ERROR = "error";
+	static final String SUCCESS = "success";
+	static final String FAILURE = "failure";
+
+	private static final String DOMAIN = "org.lsc.plugins.connectors.fusiondirectory";
+	// Histogram buckets upper bounds, in seconds
+	private static final double[] BUCKETS = { 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60 };
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	// Keys of two labels are "value1 value2", label values have no space
+	private final Map<String, Histogram> requests = new ConcurrentHashMap<>();
+	private final Map<String, LongAdder> responses = new ConcurrentHashMap<>();
+	private final Map<String, LongAdder> retries = new ConcurrentHashMap<>();
+	private final Map<String, LongAdder> bytesRead = new ConcurrentHashMap<>();
+	private final LongAdder sessionLogins = new LongAdder();
+	private final LongAdder sessionExpiries = new LongAdder();
+	private final LongAdder sessionRejections = new LongAdder();
+	private final Map<String, Histogram> applies = new ConcurrentHashMap<>();
+
+	private ObjectName objectName;
+
+	private static final class Histogram {
+		private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+		private final LongAdder count = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+
+		Histogram() {
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		void record(long duration) {
+			double seconds = duration / NANOS_PER_SECOND;
+			int bucket = 0;
+			while (bucket < BUCKETS.length && seconds > BUCKETS[bucket]) {
+				bucket++;
+			}
+			buckets[bucket].increment();
+			count.increment();
+			nanos.add(duration);
+		}
+
+		long getCount() {
+			return count.sum();
+		}
+
+		double getSeconds() {
+			return nanos.sum() / NANOS_PER_SECOND;
+		}
+	}
+
+	/**
+	 * Register the metrics in the platform MBean server, named after the connection.
+	 */
+	void register(String connection) {
+		try {
+			ObjectName name = new ObjectName(DOMAIN + ":type=Metrics,connection=" + ObjectName.quote(connection));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			objectName = name;
+		} catch (JMException e) {
+			LOGGER.warn(String.format("Cannot expose FusionDirectory metrics through JMX (%s)", e));
+		}
+	}
+
+	void unregister() {
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			} catch (JMException e) {
+				LOGGER.debug(String.format("Cannot unregister FusionDirectory metrics (%s)", e));
+			}
+			objectName = null;
+		}
+	}
+
+	/**
+	 * Count the answer to a request. The duration of the request is recorded once its response is closed,
+	 * along with the bytes read from its body.
+	 */
+	Response track(String kind, long start, Response response) {
+		increment(responses, kind + " " + response.getStatus());
+		LongAdder bytes = bytesRead.computeIfAbsent(kind, k -> new LongAdder());
+		AtomicBoolean closed = new AtomicBoolean();
+		return new Response() {
+			@Override
+			public int getStatus() {
+				return response.getStatus();
+			}
+
+			@Override
+			public InputStream getBody() throws IOException {
+				return new FilterInputStream(response.getBody()) {
+					@Override
+					public int read() throws IOException {
+						int b = super.read();
+						if (b >= 0) {
+							bytes.increment();
+						}
+						return b;
+					}
+
+					@Override
+					public int read(byte[] buffer, int offset, int length) throws IOException {
+						int read = super.read(buffer, offset, length);
+						if (read > 0) {
+							bytes.add(read);
+						}
+						return read;
+					}
+				};
+			}
+
+			@Override
+			public void close() {
+				response.close();
+				if (closed.compareAndSet(false, true)) {
+					record(requests, kind, System.nanoTime() - start);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Count a request which got no answer.
+	 */
+	void failed(String kind) {
+		increment(responses, kind + " " + ERROR);
+	}
+
+	void retried(String kind) {
+		increment(retries, kind);
+	}
+
+	void loggedIn() {
+		sessionLogins.increment();
+	}
+
+	void sessionExpired() {
+		sessionExpiries.increment();
+	}
+
+	void sessionRejected() {
+		sessionRejections.increment();
+	}
+
+	void applied(String operation, boolean success, long duration) {
+		record(applies, operation + " " + (success ? SUCCESS : FAILURE), duration);
+	}
+
+	@Override
+	public Map<String, Long> getRequestCounts() {
+		return snapshot(requests, Histogram::getCount);
+	}
+
+	@Override
+	public Map<String, Double> getRequestSeconds() {
+		return snapshot(requests, Histogram::getSeconds);
+	}
+
+	@Override
+	public Map<String, Long> getResponseCounts() {
+		return snapshot(responses, LongAdder::sum);
+	}
+
+	@Override
+	public Map<String, Long> getRetries() {
+		return snapshot(retries, LongAdder::sum);
+	}
+
+	@Override
+	public Map<String, Long> getBytesRead() {
+		return snapshot(bytesRead, LongAdder::sum);
+	}
+
+	@Override
+	public long getSessionLogins() {
+		return sessionLogins.sum();
+	}
+
+	@Override
+	public long getSessionExpiries() {
+		return sessionExpiries.sum();
+	}
+
+	@Override
+	public long getSessionRejections() {
+		return sessionRejections.sum();
+	}
+
+	@Override
+	public Map<String, Long> getApplyCounts() {
+		return snapshot(applies, Histogram::getCount);
+	}
+
+	@Override
+	public Map<String, Double> getApplySeconds() {
+		return snapshot(applies, Histogram::getSeconds);
+	}
+
+	/**
+	 * Write the metrics in Prometheus text format. The file is replaced at once, so that a collector
+	 * never reads it half written.
+	 */
+	void write(Path file) throws IOException {
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+			writeHistogram(writer, "fusiondirectory_request_seconds",
+					"Time from sending a FusionDirectory request until its response is read.", requests,
+					new String[] { "kind" });
+			writeCounter(writer, "fusiondirectory_responses_total", "FusionDirectory responses by status.",
+					responses, new String[] { "kind", "status" });
+			writeCounter(writer, "fusiondirectory_retries_total", "FusionDirectory requests sent again.",
+					retries, new String[] { "kind" });
+			writeCounter(writer, "fusiondirectory_response_bytes_total",
+					"FusionDirectory response bytes read, once decompressed.", bytesRead, new String[] { "kind" });
+			writeCounter(writer, "fusiondirectory_session_logins_total", "FusionDirectory sessions opened.",
+					sessionLogins);
+			writeCounter(writer, "fusiondirectory_session_expiries_total",
+					"FusionDirectory sessions renewed after sessionLifetime.", sessionExpiries);
+			writeCounter(writer, "fusiondirectory_session_rejections_total",
+					"FusionDirectory sessions rejected by the server.", sessionRejections);
+			writeHistogram(writer, "fusiondirectory_apply_seconds", "Time spent applying LSC modifications.",
+					applies, new String[] { "operation", "result" });
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void writeHeader(BufferedWriter writer, String name, String help, String type) throws IOException {
+		writer.write("# HELP " + name + " " + help + "\n");
+		writer.write("# TYPE " + name + " " + type + "\n");
+	}
+
+	private static void writeCounter(BufferedWriter writer, String name, String help, LongAdder counter)
+			throws IOException {
+		writeHeader(writer, name, help, "counter");
+		writer.write(name + " " + counter.sum() + "\n");
+	}
+
+	private static void writeCounter(BufferedWriter writer, String name, String help, Map<String, LongAdder> counters,
+			String[] labels) throws IOException {
+		writeHeader(writer, name, help, "counter");
+		for (Map.Entry<String, Long> counter : snapshot(counters, LongAdder::sum).entrySet()) {
+			writer.write(name + "{" + labels(labels, counter.getKey()) + "} " + counter.getValue() + "\n");
+		}
+	}
+
+	private static void writeHistogram(BufferedWriter writer, String name, String help,
+			Map<String, Histogram> histograms, String[] labels) throws IOException {
+		writeHeader(writer, name, help, "histogram");
+		for (Map.Entry<String, Histogram> histogram : new TreeMap<>(histograms).entrySet()) {
+			String keyLabels = labels(labels, histogram.getKey());
+			Histogram values = histogram.getValue();
+			long cumulated = 0;
+			for (int i = 0; i < values.buckets.length; i++) {
+				cumulated += values.buckets[i].sum();
+				String bound = i < BUCKETS.length ? Double.toString(BUCKETS[i]) : "+Inf";
+				writer.write(name + "_bucket{" + keyLabels + ",le=\"" + bound + "\"} " + cumulated + "\n");
+			}
+			writer.write(name + "_sum{" + keyLabels + "} " + values.getSeconds() + "\n");
+			writer.write(name + "_count{" + keyLabels + "} " + values.getCount() + "\n");
+		}
+	}
+
+	private static String labels(String[] names, String key) {
+		String[] values = key.split(" ", names.length);
+		StringBuilder labels = new StringBuilder();
+		for (int i = 0; i < names.length; i++) {
+			if (i > 0) {
+				labels.append(',');
+			}
+			labels.append(names[i]).append("=\"").append(values[i]).append('"');
+		}
+		return labels.toString();
+	}
+
+	private static void increment(Map<String, LongAdder> counters, String key) {
+		counters.computeIfAbsent(key, k -> new LongAdder()).increment();
+	}
+
+	private static void record(Map<String, Histogram> histograms, String key, long duration) {
+		histograms.computeIfAbsent(key, k -> new Histogram()).record(duration);
+	}
+
+	private static <T, V> Map<String, V> snapshot(Map<String, T> metrics, Function<T, V> value) {
+		Map<String, V> values = new TreeMap<>();
+		metrics.forEach((key, metric) -> values.put(key, value.apply(metric)));
+		return values;
+	}
+}
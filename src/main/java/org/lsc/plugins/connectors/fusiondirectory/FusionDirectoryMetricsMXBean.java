@@ -0,0 +1,81 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.util.Map;
+
+/**
+ * Metrics of a FusionDirectory connection, as exposed through JMX.
+ * Request kinds are login, logout, list, tabs, tab, post, patch, put and delete.
+ */
+public interface FusionDirectoryMetricsMXBean {
+
+	/** Answered requests by kind. */
+	Map<String, Long> getRequestCounts();
+
+	/** Seconds spent in answered requests by kind, until their response is read. */
+	Map<String, Double> getRequestSeconds();
+
+	/** Responses by kind and status, "kind status", the status is "error" when no answer came. */
+	Map<String, Long> getResponseCounts();
+
+	/** Requests sent again by kind. */
+	Map<String, Long> getRetries();
+
+	/** Response body bytes read by kind, once decompressed. */
+	Map<String, Long> getBytesRead();
+
+	long getSessionLogins();
+
+	/** Sessions renewed because they reached sessionLifetime. */
+	long getSessionExpiries();
+
+	/** Sessions rejected by FusionDirectory. */
+	long getSessionRejections();
+
+	/** Applied modifications by operation and result, "operation result". */
+	Map<String, Long> getApplyCounts();
+
+	/** Seconds spent applying modifications by operation and result. */
+	Map<String, Double> getApplySeconds();
+}
@@ -0,0 +1,521 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.lsc.LscDatasets;
+
+/**
+ * A pivot value to dn map, as returned by getListPivots, using a few bytes per object.
+ * Pivot values and the first RDN of dns are packed as UTF-8 in a single byte array, and the
+ * rest of the dns, usually shared by many objects, is stored once.
+ * The datasets holding the dn and the pivot are only built when read, in insertion order:
+ * changing them does not change the map. Only the dn of datasets put in the map is kept.
+ * When a memory budget is set and exceeded, the objects held in memory are moved to a sorted
+ * file (see {@link FusionDirectoryPivotRun}), objects are then read from memory first, then
+ * from each file in turn. Files are deleted when the map is closed or cleared.
+ * Not thread safe, except that reads may run while the map is closed: objects moved to a closed
+ * file are then reported with an IllegalStateException, never as missing.
+ */
+class FusionDirectoryPivotMap extends AbstractMap<String, LscDatasets> implements Closeable {
+
+	private static final String DN = "dn";
+	// Per object ints: pivot offset, pivot length, rdn length, dn suffix
+	private static final int FIELDS = 4;
+	private static final int REMOVED = -1;
+	private static final int NO_DN = -1;
+	private static final int NO_SUFFIX = -1;
+	// Estimated size of a suffix beside its characters
+	private static final int SUFFIX_OVERHEAD = 96;
+
+	private final String pivotName;
+	private final long memoryBudget;
+	private final Path spillDirectory;
+
+	private byte[] data = new byte[1024];
+	private int dataLength;
+	private int[] objects = new int[16 * FIELDS];
+	private int[] hashes = new int[16];
+	private int count;
+	private int size;
+	// Object index + 1 by hash, linear probing
+	private int[] table = new int[32];
+
+	private final List<String> suffixes = new ArrayList<>();
+	private final Map<String, Integer> suffixIds = new HashMap<>();
+	private long suffixesMemory;
+
+	private final List<FusionDirectoryPivotRun> runs = new CopyOnWriteArrayList<>();
+	// Whether objects were lost by closing their files
+	private volatile boolean runsClosed;
+
+	FusionDirectoryPivotMap(String pivotName) {
+		this(pivotName, 0, null);
+	}
+
+	/**
+	 * @param memoryBudget the estimated bytes held in memory before objects are moved to a file in
+	 *            spillDirectory, or 0 to keep everything in memory
+	 */
+	FusionDirectoryPivotMap(String pivotName, long memoryBudget, Path spillDirectory) {
+		this.pivotName = pivotName;
+		this.memoryBudget = memoryBudget;
+		this.spillDirectory = spillDirectory;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (!(key instanceof String)) {
+			return false;
+		}
+		if (find((String) key) >= 0) {
+			return true;
+		}
+		byte[] pivotBytes = ((String) key).getBytes(StandardCharsets.UTF_8);
+		for (FusionDirectoryPivotRun run : runs) {
+			if (run.find(pivotBytes) >= 0) {
+				return true;
+			}
+		}
+		checkRuns();
+		return false;
+	}
+
+	@Override
+	public LscDatasets get(Object key) {
+		if (!(key instanceof String)) {
+			return null;
+		}
+		int index = find((String) key);
+		if (index >= 0) {
+			return getDatasets(index);
+		}
+		byte[] pivotBytes = ((String) key).getBytes(StandardCharsets.UTF_8);
+		for (FusionDirectoryPivotRun run : runs) {
+			int runIndex = run.find(pivotBytes);
+			if (runIndex >= 0) {
+				return getDatasets(run, runIndex);
+			}
+		}
+		checkRuns();
+		return null;
+	}
+
+	/**
+	 * Fail instead of reporting an object as missing when it may have been in a closed file.
+	 */
+	private void checkRuns() {
+		if (runsClosed) {
+			throw new IllegalStateException("Listed objects moved to files are no longer available");
+		}
+	}
+
+	@Override
+	public LscDatasets put(String pivotValue, LscDatasets datasets) {
+		return put(pivotValue, datasets.getStringValueAttribute(DN));
+	}
+
+	/**
+	 * Add or replace an object.
+	 */
+	public LscDatasets put(String pivotValue, String dn) {
+		int previous = find(pivotValue);
+		LscDatasets previousDatasets = null;
+		if (previous >= 0) {
+			previousDatasets = getDatasets(previous);
+			// Replaced in place to keep the insertion order
+			store(previous, pivotValue, dn);
+			return previousDatasets;
+		}
+		if (!runs.isEmpty()) {
+			byte[] pivotBytes = pivotValue.getBytes(StandardCharsets.UTF_8);
+			for (FusionDirectoryPivotRun run : runs) {
+				int runIndex = run.find(pivotBytes);
+				if (runIndex >= 0) {
+					// Files are read only, the object moves back to memory
+					previousDatasets = getDatasets(run, runIndex);
+					run.remove(runIndex);
+					size--;
+					break;
+				}
+			}
+		}
+		if (count == hashes.length) {
+			hashes = Arrays.copyOf(hashes, count * 2);
+			objects = Arrays.copyOf(objects, count * 2 * FIELDS);
+		}
+		if ((count + 1) * 2 > table.length) {
+			rehash(table.length * 2);
+		}
+		int index = count++;
+		hashes[index] = hash(pivotValue);
+		store(index, pivotValue, dn);
+		insert(index);
+		size++;
+		if (memoryBudget > 0 && getMemory() > memoryBudget) {
+			spill();
+		}
+		return previousDatasets;
+	}
+
+	@Override
+	public LscDatasets remove(Object key) {
+		if (!(key instanceof String)) {
+			return null;
+		}
+		int index = find((String) key);
+		if (index >= 0) {
+			LscDatasets datasets = getDatasets(index);
+			removeAt(index);
+			return datasets;
+		}
+		byte[] pivotBytes = ((String) key).getBytes(StandardCharsets.UTF_8);
+		for (FusionDirectoryPivotRun run : runs) {
+			int runIndex = run.find(pivotBytes);
+			if (runIndex >= 0) {
+				LscDatasets datasets = getDatasets(run, runIndex);
+				run.remove(runIndex);
+				size--;
+				return datasets;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void clear() {
+		clearMemory();
+		close();
+		size = 0;
+		runsClosed = false;
+	}
+
+	/**
+	 * Delete the files holding the objects moved out of memory, which are lost.
+	 */
+	@Override
+	public void close() {
+		if (!runs.isEmpty()) {
+			runsClosed = true;
+		}
+		for (FusionDirectoryPivotRun run : runs) {
+			size -= run.getSize();
+			run.close();
+		}
+		runs.clear();
+	}
+
+	private void clearMemory() {
+		Arrays.fill(table, 0);
+		dataLength = 0;
+		count = 0;
+		suffixes.clear();
+		suffixIds.clear();
+		suffixesMemory = 0;
+	}
+
+	/**
+	 * The estimated bytes used by the objects held in memory.
+	 */
+	long getMemory() {
+		return data.length + 4L * (objects.length + hashes.length + table.length) + suffixesMemory;
+	}
+
+	/**
+	 * Move the objects held in memory to a new file, sorted by pivot.
+	 */
+	private void spill() {
+		List<byte[][]> records = new ArrayList<>(size);
+		for (int index = skipRemoved(0); index < count; index = skipRemoved(index + 1)) {
+			int offset = objects[index * FIELDS];
+			String dn = getDn(index);
+			records.add(new byte[][] {
+				Arrays.copyOfRange(data, offset, offset + objects[index * FIELDS + 1]),
+				dn != null ? dn.getBytes(StandardCharsets.UTF_8) : null });
+		}
+		records.sort((first, second) -> Arrays.compareUnsigned(first[0], second[0]));
+		try {
+			runs.add(FusionDirectoryPivotRun.write(spillDirectory, records));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot move listed objects to " + spillDirectory, e);
+		}
+		clearMemory();
+		data = new byte[1024];
+		objects = new int[16 * FIELDS];
+		hashes = new int[16];
+		table = new int[32];
+	}
+
+	@Override
+	public Set<Entry<String, LscDatasets>> entrySet() {
+		return new AbstractSet<Entry<String, LscDatasets>>() {
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public Iterator<Entry<String, LscDatasets>> iterator() {
+				return new Iterator<Entry<String, LscDatasets>>() {
+					// Objects in memory, then in each file
+					private int run = -1;
+					private int next = skipRemoved(0);
+					private int lastRun = -1;
+					private int last = -1;
+
+					@Override
+					public boolean hasNext() {
+						skipRuns();
+						return run < runs.size();
+					}
+
+					@Override
+					public Entry<String, LscDatasets> next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						lastRun = run;
+						last = next;
+						if (run < 0) {
+							next = skipRemoved(next + 1);
+							return new SimpleImmutableEntry<>(getPivot(last), getDatasets(last));
+						}
+						FusionDirectoryPivotRun current = runs.get(run);
+						next = skipRemoved(current, next + 1);
+						return new SimpleImmutableEntry<>(current.getPivot(last), getDatasets(current, last));
+					}
+
+					@Override
+					public void remove() {
+						if (last < 0) {
+							throw new IllegalStateException();
+						}
+						if (lastRun < 0) {
+							if (objects[last * FIELDS] == REMOVED) {
+								throw new IllegalStateException();
+							}
+							removeAt(last);
+						} else {
+							FusionDirectoryPivotRun current = runs.get(lastRun);
+							if (current.isRemoved(last)) {
+								throw new IllegalStateException();
+							}
+							current.remove(last);
+							size--;
+						}
+					}
+
+					private void skipRuns() {
+						while (run < runs.size() && next >= (run < 0 ? count : runs.get(run).getCount())) {
+							run++;
+							next = run < runs.size() ? skipRemoved(runs.get(run), 0) : 0;
+						}
+					}
+				};
+			}
+		};
+	}
+
+	private int skipRemoved(int index) {
+		while (index < count && objects[index * FIELDS] == REMOVED) {
+			index++;
+		}
+		return index;
+	}
+
+	private static int skipRemoved(FusionDirectoryPivotRun run, int index) {
+		while (index < run.getCount() && run.isRemoved(index)) {
+			index++;
+		}
+		return index;
+	}
+
+	private void removeAt(int index) {
+		// The index slot is kept, probing goes on past removed objects
+		objects[index * FIELDS] = REMOVED;
+		size--;
+	}
+
+	private void store(int index, String pivotValue, String dn) {
+		int rdnEnd = dn != null ? getRdnEnd(dn) : 0;
+		byte[] pivotBytes = pivotValue.getBytes(StandardCharsets.UTF_8);
+		byte[] rdnBytes = dn != null ? dn.substring(0, rdnEnd).getBytes(StandardCharsets.UTF_8) : new byte[0];
+		int offset = append(pivotBytes, rdnBytes);
+		objects[index * FIELDS] = offset;
+		objects[index * FIELDS + 1] = pivotBytes.length;
+		objects[index * FIELDS + 2] = dn != null ? rdnBytes.length : NO_DN;
+		objects[index * FIELDS + 3] = dn != null && rdnEnd < dn.length()
+				? getSuffixId(dn.substring(rdnEnd + 1)) : NO_SUFFIX;
+	}
+
+	private int append(byte[] pivotBytes, byte[] rdnBytes) {
+		int needed = dataLength + pivotBytes.length + rdnBytes.length;
+		if (needed > data.length) {
+			data = Arrays.copyOf(data, Math.max(needed, data.length * 2));
+		}
+		int offset = dataLength;
+		System.arraycopy(pivotBytes, 0, data, dataLength, pivotBytes.length);
+		System.arraycopy(rdnBytes, 0, data, dataLength + pivotBytes.length, rdnBytes.length);
+		dataLength = needed;
+		return offset;
+	}
+
+	private int getSuffixId(String suffix) {
+		Integer id = suffixIds.get(suffix);
+		if (id == null) {
+			id = suffixes.size();
+			suffixes.add(suffix);
+			suffixIds.put(suffix, id);
+			suffixesMemory += SUFFIX_OVERHEAD + 2L * suffix.length();
+		}
+		return id;
+	}
+
+	/**
+	 * The end of the first RDN of a dn: its first comma which is not escaped.
+	 */
+	private static int getRdnEnd(String dn) {
+		for (int i = 0; i < dn.length(); i++) {
+			char c = dn.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (c == ',') {
+				return i;
+			}
+		}
+		return dn.length();
+	}
+
+	private String getPivot(int index) {
+		return new String(data, objects[index * FIELDS], objects[index * FIELDS + 1], StandardCharsets.UTF_8);
+	}
+
+	private String getDn(int index) {
+		int rdnLength = objects[index * FIELDS + 2];
+		if (rdnLength == NO_DN) {
+			return null;
+		}
+		String rdn = new String(data, objects[index * FIELDS] + objects[index * FIELDS + 1], rdnLength,
+				StandardCharsets.UTF_8);
+		int suffixId = objects[index * FIELDS + 3];
+		return suffixId == NO_SUFFIX ? rdn : rdn + "," + suffixes.get(suffixId);
+	}
+
+	private LscDatasets getDatasets(int index) {
+		LscDatasets datasets = new LscDatasets();
+		datasets.put(DN, getDn(index));
+		datasets.put(pivotName, getPivot(index));
+		return datasets;
+	}
+
+	private LscDatasets getDatasets(FusionDirectoryPivotRun run, int index) {
+		LscDatasets datasets = new LscDatasets();
+		datasets.put(DN, run.getDn(index));
+		datasets.put(pivotName, run.getPivot(index));
+		return datasets;
+	}
+
+	private int find(String pivotValue) {
+		int hash = hash(pivotValue);
+		byte[] pivotBytes = null;
+		int mask = table.length - 1;
+		for (int slot = hash & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			int index = table[slot] - 1;
+			if (hashes[index] == hash && objects[index * FIELDS] != REMOVED) {
+				if (pivotBytes == null) {
+					pivotBytes = pivotValue.getBytes(StandardCharsets.UTF_8);
+				}
+				int offset = objects[index * FIELDS];
+				if (Arrays.equals(data, offset, offset + objects[index * FIELDS + 1], pivotBytes, 0,
+						pivotBytes.length)) {
+					return index;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private void insert(int index) {
+		int mask = table.length - 1;
+		int slot = hashes[index] & mask;
+		while (table[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = index + 1;
+	}
+
+	private void rehash(int tableSize) {
+		table = new int[tableSize];
+		for (int index = 0; index < count; index++) {
+			if (objects[index * FIELDS] != REMOVED) {
+				insert(index);
+			}
+		}
+	}
+
+	private static int hash(String pivotValue) {
+		int hash = pivotValue.hashCode();
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A read only file of (pivot, dn) records sorted by pivot, written when a listing exceeds its
+ * memory budget. The file is memory mapped and searched by binary search on a table of record
+ * offsets stored after the records. Records may be marked as removed, the file is deleted on close.
+ * Reading a closed run fails with an IllegalStateException; the mapping itself is only released once
+ * the run is garbage collected, so a read racing with close never reads unmapped memory.
+ */
+class FusionDirectoryPivotRun implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FusionDirectoryPivotRun.class);
+	// Files are mapped by chunks, records never span two chunks
+	private static final int CHUNK_BITS = 30;
+	private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+	private static final int NO_DN = -1;
+
+	private final Path file;
+	private final int count;
+	private final long offsetsStart;
+	private final MappedByteBuffer[] chunks;
+	private final BitSet removed = new BitSet();
+	private volatile boolean closed;
+
+	/**
+	 * Write the (pivot, dn) records, sorted by pivot bytes, to a new file. The dn may be null.
+	 */
+	static FusionDirectoryPivotRun write(Path directory, List<byte[][]> records) throws IOException {
+		Path file = Files.createTempFile(directory, "fusiondirectory-pivots-", ".run");
+		long[] offsets = new long[records.size()];
+		long position = 0;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			for (int i = 0; i < records.size(); i++) {
+				byte[] pivot = records.get(i)[0];
+				byte[] dn = records.get(i)[1];
+				int length = 8 + pivot.length + (dn != null ? dn.length : 0);
+				position = pad(out, position, length);
+				offsets[i] = position;
+				out.writeInt(pivot.length);
+				out.write(pivot);
+				if (dn != null) {
+					out.writeInt(dn.length);
+					out.write(dn);
+				} else {
+					out.writeInt(NO_DN);
+				}
+				position += length;
+			}
+			while (position % 8 != 0) {
+				out.write(0);
+				position++;
+			}
+			long offsetsStart = position;
+			for (long offset : offsets) {
+				out.writeLong(offset);
+			}
+			position += 8L * offsets.length;
+			out.close();
+			return new FusionDirectoryPivotRun(file, records.size(), offsetsStart, position);
+		} catch (IOException e) {
+			Files.deleteIfExists(file);
+			throw e;
+		}
+	}
+
+	private static long pad(DataOutputStream out, long position, int length) throws IOException {
+		long chunkEnd = (position / CHUNK_SIZE + 1) * CHUNK_SIZE;
+		if (position + length > chunkEnd) {
+			for (long i = position; i < chunkEnd; i++) {
+				out.write(0);
+			}
+			return chunkEnd;
+		}
+		return position;
+	}
+
+	private FusionDirectoryPivotRun(Path file, int count, long offsetsStart, long size) throws IOException {
+		this.file = file;
+		this.count = count;
+		this.offsetsStart = offsetsStart;
+		this.chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			for (int i = 0; i < chunks.length; i++) {
+				long start = i * CHUNK_SIZE;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start));
+			}
+		}
+	}
+
+	int getCount() {
+		return count;
+	}
+
+	/**
+	 * The number of records which are not removed.
+	 */
+	int getSize() {
+		return count - removed.cardinality();
+	}
+
+	boolean isRemoved(int index) {
+		return removed.get(index);
+	}
+
+	void remove(int index) {
+		removed.set(index);
+	}
+
+	/**
+	 * The index of a record which is not removed, or -1.
+	 */
+	int find(byte[] pivot) {
+		checkOpen();
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = comparePivot(middle, pivot);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return removed.get(middle) ? -1 : middle;
+			}
+		}
+		return -1;
+	}
+
+	String getPivot(int index) {
+		checkOpen();
+		long offset = getOffset(index);
+		return getString(offset + 4, getInt(offset));
+	}
+
+	String getDn(int index) {
+		checkOpen();
+		long offset = getOffset(index);
+		long dnOffset = offset + 4 + getInt(offset);
+		int length = getInt(dnOffset);
+		return length != NO_DN ? getString(dnOffset + 4, length) : null;
+	}
+
+	private int comparePivot(int index, byte[] pivot) {
+		long offset = getOffset(index);
+		int length = getInt(offset);
+		MappedByteBuffer chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+		int position = (int) (offset & (CHUNK_SIZE - 1)) + 4;
+		for (int i = 0; i < Math.min(length, pivot.length); i++) {
+			int comparison = Integer.compare(Byte.toUnsignedInt(chunk.get(position + i)),
+					Byte.toUnsignedInt(pivot[i]));
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+		return Integer.compare(length, pivot.length);
+	}
+
+	private long getOffset(int index) {
+		long position = offsetsStart + 8L * index;
+		return chunks[(int) (position >>> CHUNK_BITS)].getLong((int) (position & (CHUNK_SIZE - 1)));
+	}
+
+	private int getInt(long position) {
+		return chunks[(int) (position >>> CHUNK_BITS)].getInt((int) (position & (CHUNK_SIZE - 1)));
+	}
+
+	private String getString(long position, int length) {
+		byte[] bytes = new byte[length];
+		chunks[(int) (position >>> CHUNK_BITS)].get((int) (position & (CHUNK_SIZE - 1)), bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException(String.format("Listed objects in %s are no longer available", file));
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			LOGGER.warn(String.format("Cannot delete %s (%s)", file, e));
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.lsc.exception.LscServiceException;
+import org.lsc.plugins.connectors.fusiondirectory.beans.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The FusionDirectory sessions shared by all the threads using a DAO.
+ * FusionDirectory handles the requests of a session one at a time, so each request takes a session
+ * for itself and gives it back once answered. Idle sessions are reused, the most recently used first,
+ * and a new session is opened when they are all taken, up to the pool size if any.
+ * Logins are done outside of the pool lock, so only the threads needing a new session wait for it,
+ * and expired sessions are logged out in the background.
+ */
+class FusionDirectorySessionPool {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FusionDirectorySessionPool.class);
+
+	interface SessionFactory {
+		Token login() throws LscServiceException;
+		void logout(Token token);
+		void expired(Token token);
+	}
+
+	// Maximum number of sessions, 0 for no limit
+	private final int size;
+	private final int sessionLifetime;
+	private final SessionFactory factory;
+	private final Executor logoutExecutor;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition released = lock.newCondition();
+	private final Deque<Token> idle = new ArrayDeque<>();
+	private final Set<Token> taken = new HashSet<>();
+	private int loggingIn;
+	private boolean closed;
+
+	FusionDirectorySessionPool(int size, int sessionLifetime, SessionFactory factory, Executor logoutExecutor) {
+		this.size = Math.max(0, size);
+		this.sessionLifetime = sessionLifetime;
+		this.factory = factory;
+		this.logoutExecutor = logoutExecutor;
+	}
+
+	/**
+	 * Take a session, waiting for one to be released when the pool is full.
+	 * It must be given back with {@link #release(Token)} or {@link #invalidate(Token)}.
+	 */
+	Token acquire() throws LscServiceException {
+		lock.lock();
+		try {
+			while (true) {
+				Token token = idle.pollFirst();
+				if (token != null && token.hasExpired(sessionLifetime)) {
+					expire(token);
+				} else if (token != null) {
+					taken.add(token);
+					return token;
+				} else if (size == 0 || taken.size() + loggingIn < size) {
+					loggingIn++;
+					break;
+				} else {
+					released.await();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LscServiceException(e);
+		} finally {
+			lock.unlock();
+		}
+		Token token = null;
+		try {
+			token = factory.login();
+			return token;
+		} finally {
+			lock.lock();
+			try {
+				loggingIn--;
+				if (token != null) {
+					taken.add(token);
+				} else {
+					released.signal();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Give back a session once its request is answered.
+	 */
+	void release(Token token) {
+		boolean logout = false;
+		lock.lock();
+		try {
+			if (!taken.remove(token)) {
+				return;
+			}
+			if (closed) {
+				logout = true;
+			} else if (token.hasExpired(sessionLifetime)) {
+				expire(token);
+			} else {
+				idle.addFirst(token);
+			}
+			released.signal();
+		} finally {
+			lock.unlock();
+		}
+		if (logout) {
+			logout(token);
+		}
+	}
+
+	/**
+	 * Drop a session rejected by FusionDirectory instead of giving it back.
+	 */
+	void invalidate(Token token) {
+		lock.lock();
+		try {
+			if (taken.remove(token)) {
+				LOGGER.info("Reset FusionDirectory session");
+				released.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void expire(Token token) {
+		LOGGER.info(String.format("Expire FusionDirectory session after %s seconds.", sessionLifetime));
+		factory.expired(token);
+		logoutExecutor.execute(() -> logout(token));
+	}
+
+	/**
+	 * Log out from the idle sessions. The sessions still taken are logged out when released.
+	 */
+	void close() {
+		List<Token> tokens;
+		lock.lock();
+		try {
+			closed = true;
+			tokens = new ArrayList<>(idle);
+			idle.clear();
+		} finally {
+			lock.unlock();
+		}
+		tokens.forEach(this::logout);
+	}
+
+	private void logout(Token token) {
+		try {
+			factory.logout(token);
+		} catch (RuntimeException e) {
+			LOGGER.warn(String.format("Cannot logout from Fusiondirectory (%s)", e));
+		}
+	}
+}
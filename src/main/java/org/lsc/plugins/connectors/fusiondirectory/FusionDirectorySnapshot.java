@@ -0,0 +1,156 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of the destination objects, keyed by pivot value (case insensitive).
+ * Each object is stored as a flat array: its dn, its pivot value, then the values of the
+ * configured attributes in configuration order.
+ * Objects written since the snapshot was loaded are marked stale and must be read from FusionDirectory.
+ */
+class FusionDirectorySnapshot {
+
+	private static final int DN_INDEX = 0;
+	private static final int PIVOT_INDEX = 1;
+	private static final int FIRST_VALUE_INDEX = 2;
+
+	private final String dnAttribute;
+	private final String[] attributes;
+	private final Map<String, Object[]> objects = new ConcurrentHashMap<>();
+	private final Set<String> stale = ConcurrentHashMap.newKeySet();
+
+	FusionDirectorySnapshot(String dnAttribute, List<String> attributes) {
+		this.dnAttribute = dnAttribute;
+		this.attributes = attributes.toArray(new String[0]);
+	}
+
+	void put(String pivotValue, Map<String, Object> details) {
+		Object[] object = new Object[FIRST_VALUE_INDEX + attributes.length];
+		object[DN_INDEX] = details.get(dnAttribute);
+		object[PIVOT_INDEX] = pivotValue;
+		for (int i = 0; i < attributes.length; i++) {
+			object[FIRST_VALUE_INDEX + i] = details.get(attributes[i]);
+		}
+		objects.put(key(pivotValue), object);
+	}
+
+	/**
+	 * Whether the snapshot can answer for this pivot value, i.e. the object was not written since.
+	 */
+	boolean covers(String pivotValue) {
+		return !stale.contains(key(pivotValue));
+	}
+
+	boolean contains(String pivotValue) {
+		return objects.containsKey(key(pivotValue));
+	}
+
+	String getDn(String pivotValue) {
+		Object[] object = objects.get(key(pivotValue));
+		return object != null ? (String) object[DN_INDEX] : null;
+	}
+
+	String getPivot(String pivotValue) {
+		Object[] object = objects.get(key(pivotValue));
+		return object != null ? (String) object[PIVOT_INDEX] : null;
+	}
+
+	/**
+	 * The object details, as returned by {@link FusionDirectoryDao#getDetails}, or null if it does not exist.
+	 */
+	Map<String, Object> getDetails(String pivotValue) {
+		Object[] object = objects.get(key(pivotValue));
+		if (object == null) {
+			return null;
+		}
+		Map<String, Object> details = new HashMap<>();
+		details.put(dnAttribute, object[DN_INDEX]);
+		for (int i = 0; i < attributes.length; i++) {
+			if (object[FIRST_VALUE_INDEX + i] != null) {
+				details.put(attributes[i], object[FIRST_VALUE_INDEX + i]);
+			}
+		}
+		return details;
+	}
+
+	/**
+	 * The object was created or modified: it must now be read from FusionDirectory.
+	 */
+	void invalidate(String pivotValue) {
+		String key = key(pivotValue);
+		stale.add(key);
+		objects.remove(key);
+	}
+
+	/**
+	 * The object was deleted: the snapshot knows it does not exist anymore.
+	 */
+	void remove(String pivotValue) {
+		String key = key(pivotValue);
+		objects.remove(key);
+		stale.remove(key);
+	}
+
+	int size() {
+		return objects.size();
+	}
+
+	/**
+	 * Forget all the objects, before loading them again.
+	 */
+	void clear() {
+		objects.clear();
+		stale.clear();
+	}
+
+	private static String key(String pivotValue) {
+		return pivotValue.toLowerCase(Locale.ROOT);
+	}
+}
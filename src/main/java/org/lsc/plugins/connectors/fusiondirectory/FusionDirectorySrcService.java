@@ -42,11 +42,26 @@
  */
 package org.lsc.plugins.connectors.fusiondirectory;
 
+import java.io.Closeable;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Paths;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.lsc.LscDatasets;
 import org.lsc.beans.IBean;
@@ -55,7 +70,7 @@ import org.lsc.configuration.TaskType;
 import org.lsc.exception.LscServiceConfigurationException;
 import org.lsc.exception.LscServiceException;
 import org.lsc.plugins.connectors.fusiondirectory.generated.ServiceSettings;
-import org.lsc.service.IService;
+import org.lsc.service.IAsynchronousService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,9 +78,73 @@ import jakarta.ws.rs.NotFoundException;
 import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.WebApplicationException;
 
-public class FusionDirectorySrcService extends FusionDirectoryAbstractService implements IService {
+public class FusionDirectorySrcService extends FusionDirectoryAbstractService implements IAsynchronousService, Closeable {
 
 	protected static final Logger LOGGER = LoggerFactory.getLogger(FusionDirectorySrcService.class);
+	private static final String MODIFY_TIMESTAMP = "modifyTimestamp";
+	private static final String FULL_SYNC_PROPERTY = "fusiondirectory.fullSync";
+
+	private boolean prefetch;
+	// Details fetched along with the pivot list, by dn
+	private final Map<String, Map<String, Object>> prefetched = new ConcurrentHashMap<>();
+
+	// Asynchronous mode: objects modified since the previous poll, waiting to be handed to LSC
+	private long pollInterval;
+	private FusionDirectoryWatermark watermark;
+	private final Deque<Entry<String, LscDatasets>> changes = new ArrayDeque<>();
+	// Latest timestamp polled, ahead of the watermark until its changes are read; null to poll from the watermark
+	private Optional<String> pollTimestamp;
+	// Objects already handed out with the poll timestamp, which the next poll returns again
+	private Set<String> changedAtWatermark = new HashSet<>();
+	// Poll of each object handed out and not read yet, by dn
+	private final Map<String, FusionDirectoryWatermark.Run> pendingReads = new ConcurrentHashMap<>();
+	private volatile boolean pollFailed;
+
+	// Incremental mode: only objects modified since the watermark are listed
+	private boolean incremental;
+	private int fullSyncEvery;
+	// Latest listing, which moves the watermark once all its objects are read
+	private volatile FusionDirectoryWatermark.Run listingRun;
+
+	// Source objects listed, answering clean lookups when cleanCache is set
+	private boolean cleanCache;
+	private volatile CleanObjects cleanObjects;
+
+	/**
+	 * A listing and, for its pivot values which are not lower case, their value by lower cased value,
+	 * so that clean lookups ignore case.
+	 */
+	private static final class CleanObjects {
+		private final Map<String, LscDatasets> objects;
+		private final Map<String, String> pivotsByLowerCase = new HashMap<>();
+
+		CleanObjects(Map<String, LscDatasets> objects) {
+			this.objects = objects;
+			for (String pivotValue : objects.keySet()) {
+				String lowerCased = pivotValue.toLowerCase(Locale.ROOT);
+				if (!lowerCased.equals(pivotValue) && !pivotsByLowerCase.containsKey(lowerCased)) {
+					pivotsByLowerCase.put(lowerCased, pivotValue);
+				}
+			}
+		}
+
+		Optional<Entry<String, LscDatasets>> find(String pivotValue) {
+			LscDatasets datasets = objects.get(pivotValue);
+			if (datasets != null) {
+				return Optional.of(new SimpleEntry<>(pivotValue, datasets));
+			}
+			String key = pivotValue.toLowerCase(Locale.ROOT);
+			datasets = objects.get(key);
+			if (datasets == null) {
+				key = pivotsByLowerCase.get(key);
+				if (key == null) {
+					return Optional.empty();
+				}
+				datasets = objects.get(key);
+			}
+			return datasets != null ? Optional.of(new SimpleEntry<>(key, datasets)) : Optional.empty();
+		}
+	}
 
 	@SuppressWarnings("unchecked")
 	public FusionDirectorySrcService(final TaskType task) throws LscServiceConfigurationException {
@@ -84,8 +163,8 @@ public class FusionDirectorySrcService extends FusionDirectoryAbstractService im
 						+ " connection settings inside task: " + task.getName());
 			}
 			beanClass = (Class<IBean>) Class.forName(task.getBean());
-			dao = new FusionDirectoryDao(connection.getUrl(), connection.getUsername(), connection.getPassword(),
-					settings.getSessionLifetime().intValue(), getStringParameter(settings.getDirectory()));
+			dao = FusionDirectoryDaoRegistry.acquire(connection.getUrl(), connection.getUsername(),
+					connection.getPassword(), settings);
 			this.entity = settings.getEntity();
 			this.pivot = getStringParameter(settings.getPivot());
 			this.base = getStringParameter(settings.getBase());
@@ -94,12 +173,204 @@ public class FusionDirectorySrcService extends FusionDirectoryAbstractService im
 			this.oneFilter = getStringParameter(settings.getOneFilter());
 			this.cleanFilter = getStringParameter(settings.getCleanFilter());
 			this.template = getStringParameter(settings.getTemplate());
-			this.attributesSettings = settings.getAttributes();
+			prepareFilters();
+			if (settings.getPartitions() != null) {
+				this.partitions = settings.getPartitions().getPartition();
+				this.partitionConcurrency = Math.max(1, settings.getPartitions().getConcurrency());
+			}
+			this.listMemoryBudget = settings.getListMemoryBudget().longValue() * 1024 * 1024;
+			this.spillDirectory = Paths.get(getStringParameter(settings.getSpillDirectory())
+					.orElse(System.getProperty("java.io.tmpdir")));
+			this.metricsFile = getStringParameter(settings.getMetricsFile());
+			this.attributes = new FusionDirectoryAttributes(settings.getAttributes());
+			this.tabConcurrency = settings.getTabConcurrency().intValue();
+			this.ldapAttributesDetails = isLdapAttributesDetailMode(settings.getDetailMode());
+			this.prefetch = settings.isPrefetch();
+			this.pollInterval = settings.getPollInterval().longValue() * 1000;
+			this.watermark = new FusionDirectoryWatermark(getStringParameter(settings.getWatermarkFile()));
+			this.incremental = settings.isIncremental();
+			this.fullSyncEvery = settings.getFullSyncEvery().intValue();
+			this.cleanCache = settings.isCleanCache();
+			if (cleanCache && cleanFilter.isPresent()) {
+				LOGGER.warn("cleanCache cannot be used along with cleanFilter, ignored.");
+				cleanCache = false;
+			}
+			Runtime.getRuntime().addShutdownHook(new Thread(this::close));
 		} catch (Exception e) {
+			releaseDao();
 			throw new LscServiceConfigurationException(e);
 		}
 	}
 
+	@Override
+	protected Map<String, LscDatasets> getList() throws LscServiceException {
+		cleanObjects = null;
+		listingRun = null;
+		if (!prefetch && !incremental) {
+			return cacheForClean(super.getList());
+		}
+		String pivotName = getPivotName();
+		// The objects of an earlier listing not read yet will be listed again
+		watermark.abandonRuns();
+		Optional<String> since = incremental && !isFullSyncRun() ? watermark.getTimestamp() : Optional.empty();
+		Optional<String> computedFilter = since.isPresent() ? getModifiedSinceFilter(since.get()) : getAllFilter();
+		Set<String> ldapAttributes = prefetch ? attributes.getLdapAttributes()
+				: new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		ldapAttributes.add(pivotName);
+		if (incremental) {
+			ldapAttributes.add(MODIFY_TIMESTAMP);
+		}
+		AtomicReference<String> latest = new AtomicReference<>(since.orElse(""));
+		prefetched.clear();
+		Map<String, LscDatasets> resources = mergePartitions(listPartitions(computedFilter,
+				(partitionBase, partitionFilter) -> {
+			FusionDirectoryPivotMap partitionResources = newPivotMap();
+			dao.getListWithAttributes(entity, partitionBase, partitionFilter, ldapAttributes, (dn, values) -> {
+				List<String> pivotValues = values.get(pivotName);
+				if (pivotValues == null || pivotValues.isEmpty()) {
+					return;
+				}
+				partitionResources.put(pivotValues.get(0), dn);
+				if (prefetch) {
+					prefetched.put(dn, dao.toDetails(dn, values, attributes));
+				}
+				List<String> timestamps = values.get(MODIFY_TIMESTAMP);
+				if (timestamps != null && !timestamps.isEmpty()) {
+					latest.accumulateAndGet(timestamps.get(0), (a, b) -> a.compareTo(b) >= 0 ? a : b);
+				}
+			});
+			return partitionResources;
+		}));
+		if (prefetch) {
+			LOGGER.debug(String.format("Prefetched %d %s entries", prefetched.size(), entity));
+		}
+		if (incremental) {
+			LOGGER.info(String.format("%d %s entries modified since %s", resources.size(), entity,
+					since.orElse("ever")));
+			// Stored once all the listed objects are read, and not if one of them cannot be read
+			listingRun = watermark.startRun(latest.get().isEmpty() ? since : Optional.of(latest.get()),
+					OptionalInt.of(since.isPresent() ? watermark.getIncrementalRuns() + 1 : 0), resources.size());
+		}
+		return since.isPresent() ? resources : cacheForClean(resources);
+	}
+
+	/**
+	 * Keep a full listing to answer clean lookups, when it has been made with the filter clean lookups use.
+	 */
+	private Map<String, LscDatasets> cacheForClean(Map<String, LscDatasets> resources) {
+		if (cleanCache && !allFilter.isPresent()) {
+			cleanObjects = new CleanObjects(resources);
+		}
+		return resources;
+	}
+
+	private CleanObjects getCleanObjects() throws LscServiceException {
+		CleanObjects objects = cleanObjects;
+		if (objects == null) {
+			synchronized (this) {
+				objects = cleanObjects;
+				if (objects == null) {
+					Map<String, LscDatasets> resources = getAllList(filter);
+					objects = new CleanObjects(resources);
+					LOGGER.debug(String.format("Loaded %d %s entries for clean lookups", resources.size(), entity));
+					cleanObjects = objects;
+				}
+			}
+		}
+		return objects;
+	}
+
+	private boolean isFullSyncRun() {
+		if (Boolean.getBoolean(FULL_SYNC_PROPERTY)) {
+			LOGGER.info(String.format("Full %s synchronization requested by %s", entity, FULL_SYNC_PROPERTY));
+			return true;
+		}
+		return fullSyncEvery > 0 && watermark.getIncrementalRuns() + 1 >= fullSyncEvery;
+	}
+
+	private Optional<String> getModifiedSinceFilter(String since) {
+		String timestampFilter = "(" + MODIFY_TIMESTAMP + ">=" + since + ")";
+		return Optional.of(getAllFilter().map(f -> "(&" + f + timestampFilter + ")").orElse(timestampFilter));
+	}
+
+	@Override
+	public void close() {
+		closeListings();
+		writeMetrics();
+		releaseDao();
+	}
+
+	@Override
+	public synchronized Entry<String, LscDatasets> getNextId() throws LscServiceException {
+		if (changes.isEmpty()) {
+			pollChanges();
+		}
+		return changes.poll();
+	}
+
+	@Override
+	public long getInterval() {
+		return pollInterval;
+	}
+
+	private void pollChanges() throws LscServiceException {
+		if (pollTimestamp == null || pollFailed) {
+			// Poll again the changes since the watermark, including the objects which could not be read
+			pollFailed = false;
+			pollTimestamp = watermark.getTimestamp();
+			changedAtWatermark = new HashSet<>();
+			pendingReads.clear();
+		}
+		Optional<String> since = pollTimestamp;
+		String pivotName = getPivotName();
+		Optional<String> computedFilter = since.isPresent() ? getModifiedSinceFilter(since.get()) : getAllFilter();
+		String[] latest = { since.orElse("") };
+		Set<String> changedAtLatest = new HashSet<>(changedAtWatermark);
+		dao.getListWithAttributes(entity, base, computedFilter, Arrays.asList(pivotName, MODIFY_TIMESTAMP),
+				(dn, values) -> {
+					List<String> pivotValues = values.get(pivotName);
+					List<String> timestamps = values.get(MODIFY_TIMESTAMP);
+					if (pivotValues == null || pivotValues.isEmpty() || timestamps == null || timestamps.isEmpty()) {
+						return;
+					}
+					String timestamp = timestamps.get(0);
+					if (since.isPresent() && timestamp.equals(since.get()) && changedAtWatermark.contains(dn)) {
+						return;
+					}
+					if (timestamp.compareTo(latest[0]) > 0) {
+						latest[0] = timestamp;
+						changedAtLatest.clear();
+					}
+					if (timestamp.equals(latest[0])) {
+						changedAtLatest.add(dn);
+					}
+					if (since.isPresent()) {
+						LscDatasets datasets = new LscDatasets();
+						datasets.put(DN, dn);
+						datasets.put(pivotName, pivotValues.get(0));
+						changes.add(new SimpleEntry<>(pivotValues.get(0), datasets));
+					}
+				});
+		if (!since.isPresent()) {
+			LOGGER.info(String.format("No %s watermark yet, changes will be read from %s", entity, latest[0]));
+		} else if (!changes.isEmpty()) {
+			LOGGER.debug(String.format("%d %s changed since %s", changes.size(), entity, since.get()));
+		}
+		Optional<String> polled = latest[0].isEmpty() ? since : Optional.of(latest[0]);
+		// The watermark moves once the changes are read, after the ones of the previous polls
+		FusionDirectoryWatermark.Run run = watermark.startRun(polled, OptionalInt.empty(), changes.size());
+		for (Entry<String, LscDatasets> change : changes) {
+			String dn = change.getValue().getStringValueAttribute(DN);
+			FusionDirectoryWatermark.Run previous = pendingReads.put(dn, run);
+			if (previous != null) {
+				// Polled again before being read, the read for this poll covers both
+				previous.read();
+			}
+		}
+		pollTimestamp = polled;
+		changedAtWatermark = changedAtLatest;
+	}
+
 	@Override
 	public IBean getBean(String pivotRawValue, LscDatasets lscDatasets, boolean fromSameService)
 			throws LscServiceException {
@@ -108,7 +379,25 @@ public class FusionDirectorySrcService extends FusionDirectoryAbstractService im
 			return null;
 		}
 		if (fromSameService) {
-			return getBeanFromSameService(pivotRawValue, lscDatasets.getStringValueAttribute(DN));
+			String dn = lscDatasets.getStringValueAttribute(DN);
+			FusionDirectoryWatermark.Run run = dn != null ? pendingReads.remove(dn) : null;
+			if (run == null) {
+				run = listingRun;
+			}
+			try {
+				IBean bean = getBeanFromSameService(pivotRawValue, dn);
+				if (run != null) {
+					run.read();
+				}
+				return bean;
+			} catch (LscServiceException | RuntimeException e) {
+				// The next poll or incremental run would skip this object
+				if (run != null) {
+					run.failed();
+					pollFailed = true;
+				}
+				throw e;
+			}
 		} else {
 			return getBeanForClean(lscDatasets.getStringValueAttribute(getPivotName()), lscDatasets);
 		}
@@ -119,7 +408,11 @@ public class FusionDirectorySrcService extends FusionDirectoryAbstractService im
 			return null;
 		}
 		try {
-			Map<String, Object> entity = getDetails(dn);
+			// Prefetched details are served once, then read again from FusionDirectory
+			Map<String, Object> entity = prefetched.remove(dn);
+			if (entity == null) {
+				entity = getDetails(dn);
+			}
 			IBean bean = beanClass.getDeclaredConstructor().newInstance();
 			bean.setMainIdentifier(pivotValue);
 			LscDatasets datasets = new LscDatasets();
@@ -144,7 +437,8 @@ public class FusionDirectorySrcService extends FusionDirectoryAbstractService im
 	private IBean getBeanForClean(String pivotValue, LscDatasets pivots) throws LscServiceException {
 		String pivotName = getPivotName();
 		try {
-			Optional<Entry<String, LscDatasets>> entity = findFirstByPivots(pivots, true);
+			Optional<Entry<String, LscDatasets>> entity = cleanCache ? findInCleanObjects(pivots)
+					: findFirstByPivots(pivots, true);
 			if (entity.isPresent()) {
 				IBean bean = beanClass.getDeclaredConstructor().newInstance();
 				bean.setMainIdentifier(entity.get().getKey().toString());
@@ -166,4 +460,18 @@ public class FusionDirectorySrcService extends FusionDirectoryAbstractService im
 			throw new LscServiceException(e);
 		}
 	}
+
+	private Optional<Entry<String, LscDatasets>> findInCleanObjects(LscDatasets pivots) throws LscServiceException {
+		CleanObjects objects = getCleanObjects();
+		for (String somePivot : pivots.getAttributesNames()) {
+			String pivotValue = pivots.getStringValueAttribute(somePivot);
+			if (pivotValue != null) {
+				Optional<Entry<String, LscDatasets>> object = objects.find(pivotValue);
+				if (object.isPresent()) {
+					return object;
+				}
+			}
+		}
+		return Optional.empty();
+	}
 }
@@ -0,0 +1,156 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limit the requests sent to FusionDirectory.
+ * The number of requests in flight adapts to the server (AIMD): it grows by one request per round trip
+ * while requests are answered within the target latency, and shrinks when they are slow or when the
+ * server is overloaded. An optional token bucket also caps the request rate.
+ */
+class FusionDirectoryThrottle {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FusionDirectoryThrottle.class);
+	private static final double MIN_LIMIT = 1;
+	private static final double SLOW_DECREASE = 0.9;
+	private static final double OVERLOAD_DECREASE = 0.5;
+
+	private final int maxInFlight;
+	private final long targetLatencyNanos;
+	private final double rate;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition released = lock.newCondition();
+	private double limit;
+	private int inFlight;
+	private long lastDecrease = System.nanoTime();
+
+	private final ReentrantLock bucketLock = new ReentrantLock();
+	private double tokens;
+	private long lastRefill = System.nanoTime();
+
+	/**
+	 * @param maxInFlight the upper in flight limit, 0 to disable the adaptive limit
+	 * @param targetLatency the latency in milliseconds above which the limit shrinks
+	 * @param rate the maximum number of requests per second, 0 to disable the token bucket
+	 */
+	FusionDirectoryThrottle(int maxInFlight, int targetLatency, int rate) {
+		this.maxInFlight = maxInFlight;
+		this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatency);
+		this.rate = rate;
+		this.limit = maxInFlight;
+		this.tokens = rate;
+	}
+
+	void acquire() throws InterruptedException {
+		if (rate > 0) {
+			acquireToken();
+		}
+		if (maxInFlight > 0) {
+			lock.lock();
+			try {
+				while (inFlight >= (int) limit) {
+					released.await();
+				}
+				inFlight++;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * @param latencyNanos how long the request took
+	 * @param overloaded whether the server failed to answer or answered it is overloaded
+	 */
+	void release(long latencyNanos, boolean overloaded) {
+		if (maxInFlight <= 0) {
+			return;
+		}
+		lock.lock();
+		try {
+			inFlight--;
+			long now = System.nanoTime();
+			if (overloaded || latencyNanos > targetLatencyNanos) {
+				// Requests in flight answer the same congestion: shrink at most once per round trip
+				if (now - lastDecrease > latencyNanos) {
+					limit = Math.max(MIN_LIMIT, limit * (overloaded ? OVERLOAD_DECREASE : SLOW_DECREASE));
+					lastDecrease = now;
+					LOGGER.debug(String.format("FusionDirectory in flight limit decreased to %d", (int) limit));
+				}
+			} else if (limit < maxInFlight) {
+				limit = Math.min(maxInFlight, limit + 1 / limit);
+			}
+			released.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void acquireToken() throws InterruptedException {
+		while (true) {
+			long wait;
+			bucketLock.lock();
+			try {
+				long now = System.nanoTime();
+				tokens = Math.min(rate, tokens + (now - lastRefill) * rate / TimeUnit.SECONDS.toNanos(1));
+				lastRefill = now;
+				if (tokens >= 1) {
+					tokens--;
+					return;
+				}
+				wait = (long) ((1 - tokens) * TimeUnit.SECONDS.toNanos(1) / rate);
+			} finally {
+				bucketLock.unlock();
+			}
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
+	}
+}
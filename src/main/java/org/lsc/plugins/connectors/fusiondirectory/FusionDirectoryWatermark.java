@@ -0,0 +1,193 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The latest modification timestamp already synchronized, kept in a properties file
+ * so it survives LSC restarts. Without a file, it is only kept in memory.
+ * Listings and polls move it through runs: a run moves the watermark once all of its objects have been
+ * read, after the runs started before it, and the file is only written when the watermark moved.
+ */
+class FusionDirectoryWatermark {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FusionDirectoryWatermark.class);
+	private static final String TIMESTAMP = "timestamp";
+	private static final String INCREMENTAL_RUNS = "incrementalRuns";
+
+	private final Optional<Path> file;
+	private final Properties properties = new Properties();
+	// Runs not complete yet, oldest first
+	private final Deque<Run> runs = new ArrayDeque<>();
+
+	/**
+	 * The objects of a listing or a poll, read one by one.
+	 */
+	final class Run {
+		private final Optional<String> timestamp;
+		private final OptionalInt incrementalRuns;
+		private long remaining;
+
+		private Run(Optional<String> timestamp, OptionalInt incrementalRuns, long objects) {
+			this.timestamp = timestamp;
+			this.incrementalRuns = incrementalRuns;
+			this.remaining = objects;
+		}
+
+		/**
+		 * One of the objects of the run has been read.
+		 */
+		void read() {
+			synchronized (FusionDirectoryWatermark.this) {
+				if (remaining > 0) {
+					remaining--;
+				}
+				complete();
+			}
+		}
+
+		/**
+		 * Reading one of the objects of the run failed: the watermark does not move past the runs
+		 * not complete yet, so that their objects are listed again.
+		 */
+		void failed() {
+			synchronized (FusionDirectoryWatermark.this) {
+				if (runs.contains(this)) {
+					LOGGER.warn(String.format("Some entries could not be read, watermark not moved from %s",
+							getTimestamp().orElse("the start")));
+					runs.clear();
+				}
+			}
+		}
+	}
+
+	FusionDirectoryWatermark(Optional<String> file) throws IOException {
+		this.file = file.map(Paths::get);
+		if (this.file.isPresent() && Files.exists(this.file.get())) {
+			try (InputStream in = Files.newInputStream(this.file.get())) {
+				properties.load(in);
+			}
+		}
+	}
+
+	synchronized Optional<String> getTimestamp() {
+		return Optional.ofNullable(properties.getProperty(TIMESTAMP));
+	}
+
+	/**
+	 * How many incremental runs have been done since the last full one.
+	 */
+	synchronized int getIncrementalRuns() {
+		return Integer.parseInt(properties.getProperty(INCREMENTAL_RUNS, "0"));
+	}
+
+	/**
+	 * Start a run, which moves the watermark to the given values once its objects have been read.
+	 *
+	 * @param timestamp the latest modification timestamp of the run objects, if any
+	 * @param incrementalRuns the incremental runs count to store, if any
+	 * @param objects how many objects will be read
+	 */
+	synchronized Run startRun(Optional<String> timestamp, OptionalInt incrementalRuns, long objects) {
+		Run run = new Run(timestamp, incrementalRuns, objects);
+		runs.add(run);
+		complete();
+		return run;
+	}
+
+	/**
+	 * Forget the runs not complete yet, which will not be read any more.
+	 */
+	synchronized void abandonRuns() {
+		runs.clear();
+	}
+
+	private void complete() {
+		boolean moved = false;
+		while (!runs.isEmpty() && runs.peekFirst().remaining == 0) {
+			Run run = runs.pollFirst();
+			if (run.timestamp.isPresent() && !run.timestamp.equals(getTimestamp())) {
+				properties.setProperty(TIMESTAMP, run.timestamp.get());
+				moved = true;
+			}
+			if (run.incrementalRuns.isPresent() && run.incrementalRuns.getAsInt() != getIncrementalRuns()) {
+				properties.setProperty(INCREMENTAL_RUNS, String.valueOf(run.incrementalRuns.getAsInt()));
+				moved = true;
+			}
+		}
+		if (moved) {
+			try {
+				store();
+			} catch (IOException e) {
+				LOGGER.error(String.format("Cannot store watermark %s (%s)", properties, e));
+			}
+		}
+	}
+
+	private void store() throws IOException {
+		if (!file.isPresent()) {
+			return;
+		}
+		// Replace the file at once so that an interrupted write does not lose the previous watermark
+		Path temporary = file.get().resolveSibling(file.get().getFileName() + ".tmp");
+		try (OutputStream out = Files.newOutputStream(temporary)) {
+			properties.store(out, "FusionDirectory LSC plugin watermark");
+		}
+		Files.move(temporary, file.get(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
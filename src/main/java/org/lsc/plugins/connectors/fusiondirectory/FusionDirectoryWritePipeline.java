@@ -0,0 +1,215 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import org.lsc.LscModifications;
+import org.lsc.exception.LscServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Apply modifications in the background with a fixed number of writers.
+ * Modifications of the same main identifier always go to the same writer, so they are
+ * applied in the order they were submitted. Submitting blocks while the writer queue is full.
+ * The main identifiers of the failed writes are kept until the pipeline is flushed or closed.
+ */
+class FusionDirectoryWritePipeline {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FusionDirectoryWritePipeline.class);
+	// Queued last by close, the writer stops once the writes queued before are applied
+	private static final Runnable STOP = () -> {};
+
+	interface Writer {
+		boolean apply(LscModifications lm) throws LscServiceException;
+	}
+
+	private final BlockingQueue<Runnable>[] queues;
+	private final List<Thread> threads = new ArrayList<>();
+	private final Writer writer;
+	private volatile boolean closed;
+	// Last pending write of each main identifier
+	private final ConcurrentHashMap<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+	// Main identifiers of the failed writes not reported yet
+	private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+	@SuppressWarnings("unchecked")
+	FusionDirectoryWritePipeline(int writers, int queueSize, Writer writer) {
+		this.writer = writer;
+		this.queues = new BlockingQueue[writers];
+		for (int i = 0; i < writers; i++) {
+			BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+			queues[i] = queue;
+			threads.add(Thread.ofVirtual().name("fusiondirectory-writer-" + i).start(() -> drain(queue)));
+		}
+	}
+
+	private void drain(BlockingQueue<Runnable> queue) {
+		try {
+			Runnable task;
+			while ((task = queue.take()) != STOP) {
+				task.run();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	void submit(LscModifications lm) throws LscServiceException {
+		if (closed) {
+			throw new LscServiceException(String.format("Cannot write fusiondirectory object %s after close",
+					lm.getMainIdentifier()));
+		}
+		String key = String.valueOf(lm.getMainIdentifier());
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		pending.put(key, done);
+		enqueue(queues[Math.floorMod(key.hashCode(), queues.length)], () -> {
+			try {
+				if (!writer.apply(lm)) {
+					fail(lm, null);
+				}
+			} catch (LscServiceException | RuntimeException e) {
+				fail(lm, e);
+			} finally {
+				done.complete(null);
+				pending.remove(key, done);
+			}
+		});
+	}
+
+	private void fail(LscModifications lm, Exception e) {
+		failures.add(String.valueOf(lm.getMainIdentifier()));
+		LOGGER.error(String.format("Cannot %s fusiondirectory object %s (%s)", lm.getOperation(),
+				lm.getMainIdentifier(), e));
+		if (e != null) {
+			LOGGER.debug(e.toString(), e);
+		}
+	}
+
+	private static void enqueue(BlockingQueue<Runnable> queue, Runnable task) throws LscServiceException {
+		try {
+			queue.put(task);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LscServiceException(e);
+		}
+	}
+
+	/**
+	 * Wait for the pending writes of a main identifier, if any.
+	 */
+	void await(String mainIdentifier) {
+		CompletableFuture<Void> done = pending.get(mainIdentifier);
+		if (done != null) {
+			done.join();
+		}
+	}
+
+	/**
+	 * Wait for all the writes submitted so far and return the main identifiers of the failed writes
+	 * not reported yet.
+	 */
+	List<String> flush() throws LscServiceException {
+		if (closed) {
+			return takeFailures();
+		}
+		CountDownLatch barrier = new CountDownLatch(queues.length);
+		for (BlockingQueue<Runnable> queue : queues) {
+			enqueue(queue, barrier::countDown);
+		}
+		try {
+			barrier.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LscServiceException(e);
+		}
+		return takeFailures();
+	}
+
+	/**
+	 * Apply the writes submitted so far, then stop the writers. Return the main identifiers of the failed
+	 * writes not reported yet.
+	 */
+	synchronized List<String> close() throws LscServiceException {
+		if (!closed) {
+			closed = true;
+			for (BlockingQueue<Runnable> queue : queues) {
+				enqueue(queue, STOP);
+			}
+		}
+		try {
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			// Writes submitted while closing were queued after the stop marker
+			for (BlockingQueue<Runnable> queue : queues) {
+				Runnable task;
+				while ((task = queue.poll()) != null) {
+					task.run();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LscServiceException(e);
+		}
+		return takeFailures();
+	}
+
+	private List<String> takeFailures() {
+		List<String> failed = new ArrayList<>();
+		String mainIdentifier;
+		while ((mainIdentifier = failures.poll()) != null) {
+			failed.add(mainIdentifier);
+		}
+		return failed;
+	}
+}
@@ -30,6 +30,7 @@ import javax.xml.bind.annotation.XmlType;
  *       &lt;/sequence&gt;
  *       &lt;attribute name="id" type="{http://www.w3.org/2001/XMLSchema}string" /&gt;
  *       &lt;attribute name="name" use="required" type="{http://www.w3.org/2001/XMLSchema}string" /&gt;
+ *       &lt;attribute name="clearInPatch" type="{http://www.w3.org/2001/XMLSchema}boolean" default="false" /&gt;
  *     &lt;/restriction&gt;
  *   &lt;/complexContent&gt;
  * &lt;/complexType&gt;
@@ -48,6 +49,8 @@ public class AttributesTab {
     protected String id;
     @XmlAttribute(name = "name", required = true)
     protected String name;
+    @XmlAttribute(name = "clearInPatch")
+    protected Boolean clearInPatch;
 
     /**
      * Gets the value of the attribute property.
@@ -126,4 +129,32 @@ public class AttributesTab {
         this.name = value;
     }
 
+    /**
+     * Gets the value of the clearInPatch property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public boolean isClearInPatch() {
+        if (clearInPatch == null) {
+            return false;
+        } else {
+            return clearInPatch;
+        }
+    }
+
+    /**
+     * Sets the value of the clearInPatch property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setClearInPatch(Boolean value) {
+        this.clearInPatch = value;
+    }
+
 }
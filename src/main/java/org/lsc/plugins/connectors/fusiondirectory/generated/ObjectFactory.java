@@ -68,4 +68,28 @@ public class ObjectFactory {
         return new Attribute();
     }
 
+    /**
+     * Create an instance of {@link Partitions }
+     * 
+     */
+    public Partitions createPartitions() {
+        return new Partitions();
+    }
+
+    /**
+     * Create an instance of {@link Partition }
+     * 
+     */
+    public Partition createPartition() {
+        return new Partition();
+    }
+
+    /**
+     * Create an instance of {@link Transport }
+     * 
+     */
+    public Transport createTransport() {
+        return new Transport();
+    }
+
 }
@@ -0,0 +1,106 @@
+//
+// This file was generated by the Eclipse Implementation of JAXB, v2.3.7 
+// See https://eclipse-ee4j.github.io/jaxb-ri 
+// Any modifications to this file will be lost upon recompilation of the source schema. 
+// Generated on: 2026.02.11 at 07:20:55 AM CET 
+//
+
+
+package org.lsc.plugins.connectors.fusiondirectory.generated;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlType;
+
+
+/**
+ * <p>Java class for partitions complex type.
+ * 
+ * <p>The following schema fragment specifies the expected content contained within this class.
+ * 
+ * <pre>
+ * &lt;complexType name="partitions"&gt;
+ *   &lt;complexContent&gt;
+ *     &lt;restriction base="{http://www.w3.org/2001/XMLSchema}anyType"&gt;
+ *       &lt;sequence&gt;
+ *         &lt;element name="partition" type="{http://lsc-project.org/XSD/lsc-fusiondirectory-plugin-1.2.xsd}partition" maxOccurs="unbounded" minOccurs="0"/&gt;
+ *       &lt;/sequence&gt;
+ *       &lt;attribute name="concurrency" type="{http://www.w3.org/2001/XMLSchema}int" default="4" /&gt;
+ *     &lt;/restriction&gt;
+ *   &lt;/complexContent&gt;
+ * &lt;/complexType&gt;
+ * </pre>
+ * 
+ * 
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "partitions", propOrder = {
+    "partition"
+})
+public class Partitions {
+
+    protected List<Partition> partition;
+    @XmlAttribute(name = "concurrency")
+    protected Integer concurrency;
+
+    /**
+     * Gets the value of the partition property.
+     * 
+     * <p>
+     * This accessor method returns a reference to the live list,
+     * not a snapshot. Therefore any modification you make to the
+     * returned list will be present inside the JAXB object.
+     * This is why there is not a <CODE>set</CODE> method for the partition property.
+     * 
+     * <p>
+     * For example, to add a new item, do as follows:
+     * <pre>
+     *    getPartition().add(newItem);
+     * </pre>
+     * 
+     * 
+     * <p>
+     * Objects of the following type(s) are allowed in the list
+     * {@link Partition }
+     * 
+     * 
+     */
+    public List<Partition> getPartition() {
+        if (partition == null) {
+            partition = new ArrayList<Partition>();
+        }
+        return this.partition;
+    }
+
+    /**
+     * Gets the value of the concurrency property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public int getConcurrency() {
+        if (concurrency == null) {
+            return  4;
+        } else {
+            return concurrency;
+        }
+    }
+
+    /**
+     * Sets the value of the concurrency property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setConcurrency(Integer value) {
+        this.concurrency = value;
+    }
+
+}
@@ -37,6 +37,30 @@ import org.lsc.configuration.ServiceType;
  *         &lt;element name="cleanFilter" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/&gt;
  *         &lt;element name="template" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/&gt;
  *         &lt;element name="attributes" type="{http://lsc-project.org/XSD/lsc-fusiondirectory-plugin-1.2.xsd}attributes" minOccurs="0"/&gt;
+ *         &lt;element name="prefetch" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/&gt;
+ *         &lt;element name="tabConcurrency" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/&gt;
+ *         &lt;element name="sessionPoolSize" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/&gt;
+ *         &lt;element name="dnCacheSize" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/&gt;
+ *         &lt;element name="writeThreads" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/&gt;
+ *         &lt;element name="writeQueueSize" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/&gt;
+ *         &lt;element name="pollInterval" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/&gt;
+ *         &lt;element name="watermarkFile" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/&gt;
+ *         &lt;element name="incremental" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/&gt;
+ *         &lt;element name="fullSyncEvery" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/&gt;
+ *         &lt;element name="detailMode" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/&gt;
+ *         &lt;element name="snapshot" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/&gt;
+ *         &lt;element name="cleanCache" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/&gt;
+ *         &lt;element name="maxInFlight" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/&gt;
+ *         &lt;element name="targetLatency" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/&gt;
+ *         &lt;element name="rateLimit" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/&gt;
+ *         &lt;element name="maxRetries" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/&gt;
+ *         &lt;element name="retryBackoff" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/&gt;
+ *         &lt;element name="partitions" type="{http://lsc-project.org/XSD/lsc-fusiondirectory-plugin-1.2.xsd}partitions" minOccurs="0"/&gt;
+ *         &lt;element name="listMemoryBudget" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/&gt;
+ *         &lt;element name="spillDirectory" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/&gt;
+ *         &lt;element name="transport" type="{http://lsc-project.org/XSD/lsc-fusiondirectory-plugin-1.2.xsd}transport" minOccurs="0"/&gt;
+ *         &lt;element name="metricsFile" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/&gt;
+ *         &lt;element name="concurrentDeletes" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/&gt;
  *       &lt;/sequence&gt;
  *     &lt;/extension&gt;
  *   &lt;/complexContent&gt;
@@ -57,7 +81,31 @@ import org.lsc.configuration.ServiceType;
     "oneFilter",
     "cleanFilter",
     "template",
-    "attributes"
+    "attributes",
+    "prefetch",
+    "tabConcurrency",
+    "sessionPoolSize",
+    "dnCacheSize",
+    "writeThreads",
+    "writeQueueSize",
+    "pollInterval",
+    "watermarkFile",
+    "incremental",
+    "fullSyncEvery",
+    "detailMode",
+    "snapshot",
+    "cleanCache",
+    "maxInFlight",
+    "targetLatency",
+    "rateLimit",
+    "maxRetries",
+    "retryBackoff",
+    "partitions",
+    "listMemoryBudget",
+    "spillDirectory",
+    "transport",
+    "metricsFile",
+    "concurrentDeletes"
 })
 @XmlRootElement(name = "serviceSettings")
 public class ServiceSettings
@@ -77,6 +125,49 @@ public class ServiceSettings
     protected String cleanFilter;
     protected String template;
     protected Attributes attributes;
+    @XmlElement(defaultValue = "false")
+    protected Boolean prefetch = false;
+    @XmlElement(defaultValue = "1")
+    protected Integer tabConcurrency = 1;
+    @XmlElement(defaultValue = "0")
+    protected Integer sessionPoolSize = 0;
+    @XmlElement(defaultValue = "100000")
+    protected Integer dnCacheSize = 100000;
+    @XmlElement(defaultValue = "0")
+    protected Integer writeThreads = 0;
+    @XmlElement(defaultValue = "1000")
+    protected Integer writeQueueSize = 1000;
+    @XmlElement(defaultValue = "5")
+    protected Integer pollInterval = 5;
+    protected String watermarkFile;
+    @XmlElement(defaultValue = "false")
+    protected Boolean incremental = false;
+    @XmlElement(defaultValue = "0")
+    protected Integer fullSyncEvery = 0;
+    @XmlElement(defaultValue = "tabs")
+    protected String detailMode = "tabs";
+    @XmlElement(defaultValue = "false")
+    protected Boolean snapshot = false;
+    @XmlElement(defaultValue = "false")
+    protected Boolean cleanCache = false;
+    @XmlElement(defaultValue = "0")
+    protected Integer maxInFlight = 0;
+    @XmlElement(defaultValue = "1000")
+    protected Integer targetLatency = 1000;
+    @XmlElement(defaultValue = "0")
+    protected Integer rateLimit = 0;
+    @XmlElement(defaultValue = "2")
+    protected Integer maxRetries = 2;
+    @XmlElement(defaultValue = "200")
+    protected Integer retryBackoff = 200;
+    protected Partitions partitions;
+    @XmlElement(defaultValue = "0")
+    protected Integer listMemoryBudget = 0;
+    protected String spillDirectory;
+    protected Transport transport;
+    protected String metricsFile;
+    @XmlElement(defaultValue = "false")
+    protected Boolean concurrentDeletes = false;
 
     /**
      * Gets the value of the sessionLifetime property.
@@ -342,4 +433,580 @@ public class ServiceSettings
         this.attributes = value;
     }
 
+    /**
+     * Gets the value of the prefetch property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public Boolean isPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Sets the value of the prefetch property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setPrefetch(Boolean value) {
+        this.prefetch = value;
+    }
+
+    /**
+     * Gets the value of the tabConcurrency property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getTabConcurrency() {
+        return tabConcurrency;
+    }
+
+    /**
+     * Sets the value of the tabConcurrency property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setTabConcurrency(Integer value) {
+        this.tabConcurrency = value;
+    }
+
+    /**
+     * Gets the value of the sessionPoolSize property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getSessionPoolSize() {
+        return sessionPoolSize;
+    }
+
+    /**
+     * Sets the value of the sessionPoolSize property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setSessionPoolSize(Integer value) {
+        this.sessionPoolSize = value;
+    }
+
+    /**
+     * Gets the value of the dnCacheSize property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getDnCacheSize() {
+        return dnCacheSize;
+    }
+
+    /**
+     * Sets the value of the dnCacheSize property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setDnCacheSize(Integer value) {
+        this.dnCacheSize = value;
+    }
+
+    /**
+     * Gets the value of the writeThreads property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getWriteThreads() {
+        return writeThreads;
+    }
+
+    /**
+     * Sets the value of the writeThreads property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setWriteThreads(Integer value) {
+        this.writeThreads = value;
+    }
+
+    /**
+     * Gets the value of the writeQueueSize property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getWriteQueueSize() {
+        return writeQueueSize;
+    }
+
+    /**
+     * Sets the value of the writeQueueSize property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setWriteQueueSize(Integer value) {
+        this.writeQueueSize = value;
+    }
+
+    /**
+     * Gets the value of the pollInterval property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getPollInterval() {
+        return pollInterval;
+    }
+
+    /**
+     * Sets the value of the pollInterval property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setPollInterval(Integer value) {
+        this.pollInterval = value;
+    }
+
+    /**
+     * Gets the value of the watermarkFile property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getWatermarkFile() {
+        return watermarkFile;
+    }
+
+    /**
+     * Sets the value of the watermarkFile property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setWatermarkFile(String value) {
+        this.watermarkFile = value;
+    }
+
+    /**
+     * Gets the value of the incremental property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public Boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Sets the value of the incremental property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setIncremental(Boolean value) {
+        this.incremental = value;
+    }
+
+    /**
+     * Gets the value of the fullSyncEvery property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getFullSyncEvery() {
+        return fullSyncEvery;
+    }
+
+    /**
+     * Sets the value of the fullSyncEvery property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setFullSyncEvery(Integer value) {
+        this.fullSyncEvery = value;
+    }
+
+    /**
+     * Gets the value of the detailMode property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getDetailMode() {
+        return detailMode;
+    }
+
+    /**
+     * Sets the value of the detailMode property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setDetailMode(String value) {
+        this.detailMode = value;
+    }
+
+    /**
+     * Gets the value of the snapshot property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public Boolean isSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Sets the value of the snapshot property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setSnapshot(Boolean value) {
+        this.snapshot = value;
+    }
+
+    /**
+     * Gets the value of the cleanCache property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public Boolean isCleanCache() {
+        return cleanCache;
+    }
+
+    /**
+     * Sets the value of the cleanCache property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setCleanCache(Boolean value) {
+        this.cleanCache = value;
+    }
+
+    /**
+     * Gets the value of the maxInFlight property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Sets the value of the maxInFlight property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setMaxInFlight(Integer value) {
+        this.maxInFlight = value;
+    }
+
+    /**
+     * Gets the value of the targetLatency property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getTargetLatency() {
+        return targetLatency;
+    }
+
+    /**
+     * Sets the value of the targetLatency property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setTargetLatency(Integer value) {
+        this.targetLatency = value;
+    }
+
+    /**
+     * Gets the value of the rateLimit property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * Sets the value of the rateLimit property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setRateLimit(Integer value) {
+        this.rateLimit = value;
+    }
+
+    /**
+     * Gets the value of the maxRetries property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Sets the value of the maxRetries property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setMaxRetries(Integer value) {
+        this.maxRetries = value;
+    }
+
+    /**
+     * Gets the value of the retryBackoff property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    /**
+     * Sets the value of the retryBackoff property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setRetryBackoff(Integer value) {
+        this.retryBackoff = value;
+    }
+
+    /**
+     * Gets the value of the partitions property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Partitions }
+     *     
+     */
+    public Partitions getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Sets the value of the partitions property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Partitions }
+     *     
+     */
+    public void setPartitions(Partitions value) {
+        this.partitions = value;
+    }
+
+    /**
+     * Gets the value of the listMemoryBudget property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getListMemoryBudget() {
+        return listMemoryBudget;
+    }
+
+    /**
+     * Sets the value of the listMemoryBudget property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setListMemoryBudget(Integer value) {
+        this.listMemoryBudget = value;
+    }
+
+    /**
+     * Gets the value of the spillDirectory property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Sets the value of the spillDirectory property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setSpillDirectory(String value) {
+        this.spillDirectory = value;
+    }
+
+    /**
+     * Gets the value of the transport property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Transport }
+     *     
+     */
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Sets the value of the transport property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Transport }
+     *     
+     */
+    public void setTransport(Transport value) {
+        this.transport = value;
+    }
+
+    /**
+     * Gets the value of the metricsFile property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    /**
+     * Sets the value of the metricsFile property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setMetricsFile(String value) {
+        this.metricsFile = value;
+    }
+
+    /**
+     * Gets the value of the concurrentDeletes property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public Boolean isConcurrentDeletes() {
+        return concurrentDeletes;
+    }
+
+    /**
+     * Sets the value of the concurrentDeletes property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setConcurrentDeletes(Boolean value) {
+        this.concurrentDeletes = value;
+    }
+
 }
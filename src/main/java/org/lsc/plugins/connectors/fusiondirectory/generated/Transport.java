@@ -0,0 +1,441 @@
+//
+// This file was generated by the Eclipse Implementation of JAXB, v2.3.7 
+// See https://eclipse-ee4j.github.io/jaxb-ri 
+// Any modifications to this file will be lost upon recompilation of the source schema. 
+// Generated on: 2026.02.11 at 07:20:55 AM CET 
+//
+
+
+package org.lsc.plugins.connectors.fusiondirectory.generated;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlType;
+
+
+/**
+ * <p>Java class for transport complex type.
+ * 
+ * <p>The following schema fragment specifies the expected content contained within this class.
+ * 
+ * <pre>
+ * &lt;complexType name="transport"&gt;
+ *   &lt;complexContent&gt;
+ *     &lt;restriction base="{http://www.w3.org/2001/XMLSchema}anyType"&gt;
+ *       &lt;attribute name="client" type="{http://www.w3.org/2001/XMLSchema}string" default="jersey" /&gt;
+ *       &lt;attribute name="http2" type="{http://www.w3.org/2001/XMLSchema}boolean" default="false" /&gt;
+ *       &lt;attribute name="maxConnections" type="{http://www.w3.org/2001/XMLSchema}int" default="20" /&gt;
+ *       &lt;attribute name="idleTimeout" type="{http://www.w3.org/2001/XMLSchema}int" default="60000" /&gt;
+ *       &lt;attribute name="connectTimeout" type="{http://www.w3.org/2001/XMLSchema}int" default="1000" /&gt;
+ *       &lt;attribute name="listTimeout" type="{http://www.w3.org/2001/XMLSchema}int" default="5000" /&gt;
+ *       &lt;attribute name="detailTimeout" type="{http://www.w3.org/2001/XMLSchema}int" default="5000" /&gt;
+ *       &lt;attribute name="writeTimeout" type="{http://www.w3.org/2001/XMLSchema}int" default="5000" /&gt;
+ *       &lt;attribute name="objectDeadline" type="{http://www.w3.org/2001/XMLSchema}int" default="0" /&gt;
+ *       &lt;attribute name="compression" type="{http://www.w3.org/2001/XMLSchema}boolean" default="true" /&gt;
+ *       &lt;attribute name="compressRequests" type="{http://www.w3.org/2001/XMLSchema}boolean" default="false" /&gt;
+ *       &lt;attribute name="ejectAfter" type="{http://www.w3.org/2001/XMLSchema}int" default="3" /&gt;
+ *       &lt;attribute name="ejectionTime" type="{http://www.w3.org/2001/XMLSchema}int" default="30000" /&gt;
+ *     &lt;/restriction&gt;
+ *   &lt;/complexContent&gt;
+ * &lt;/complexType&gt;
+ * </pre>
+ * 
+ * 
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "transport")
+public class Transport {
+
+    @XmlAttribute(name = "client")
+    protected String client;
+    @XmlAttribute(name = "http2")
+    protected Boolean http2;
+    @XmlAttribute(name = "maxConnections")
+    protected Integer maxConnections;
+    @XmlAttribute(name = "idleTimeout")
+    protected Integer idleTimeout;
+    @XmlAttribute(name = "connectTimeout")
+    protected Integer connectTimeout;
+    @XmlAttribute(name = "listTimeout")
+    protected Integer listTimeout;
+    @XmlAttribute(name = "detailTimeout")
+    protected Integer detailTimeout;
+    @XmlAttribute(name = "writeTimeout")
+    protected Integer writeTimeout;
+    @XmlAttribute(name = "objectDeadline")
+    protected Integer objectDeadline;
+    @XmlAttribute(name = "compression")
+    protected Boolean compression;
+    @XmlAttribute(name = "compressRequests")
+    protected Boolean compressRequests;
+    @XmlAttribute(name = "ejectAfter")
+    protected Integer ejectAfter;
+    @XmlAttribute(name = "ejectionTime")
+    protected Integer ejectionTime;
+
+    /**
+     * Gets the value of the client property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getClient() {
+        if (client == null) {
+            return  "jersey";
+        } else {
+            return client;
+        }
+    }
+
+    /**
+     * Sets the value of the client property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setClient(String value) {
+        this.client = value;
+    }
+
+    /**
+     * Gets the value of the http2 property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public boolean isHttp2() {
+        if (http2 == null) {
+            return  false;
+        } else {
+            return http2;
+        }
+    }
+
+    /**
+     * Sets the value of the http2 property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setHttp2(Boolean value) {
+        this.http2 = value;
+    }
+
+    /**
+     * Gets the value of the maxConnections property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public int getMaxConnections() {
+        if (maxConnections == null) {
+            return  20;
+        } else {
+            return maxConnections;
+        }
+    }
+
+    /**
+     * Sets the value of the maxConnections property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setMaxConnections(Integer value) {
+        this.maxConnections = value;
+    }
+
+    /**
+     * Gets the value of the idleTimeout property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public int getIdleTimeout() {
+        if (idleTimeout == null) {
+            return  60000;
+        } else {
+            return idleTimeout;
+        }
+    }
+
+    /**
+     * Sets the value of the idleTimeout property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setIdleTimeout(Integer value) {
+        this.idleTimeout = value;
+    }
+
+    /**
+     * Gets the value of the connectTimeout property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public int getConnectTimeout() {
+        if (connectTimeout == null) {
+            return  1000;
+        } else {
+            return connectTimeout;
+        }
+    }
+
+    /**
+     * Sets the value of the connectTimeout property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setConnectTimeout(Integer value) {
+        this.connectTimeout = value;
+    }
+
+    /**
+     * Gets the value of the listTimeout property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public int getListTimeout() {
+        if (listTimeout == null) {
+            return  5000;
+        } else {
+            return listTimeout;
+        }
+    }
+
+    /**
+     * Sets the value of the listTimeout property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setListTimeout(Integer value) {
+        this.listTimeout = value;
+    }
+
+    /**
+     * Gets the value of the detailTimeout property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public int getDetailTimeout() {
+        if (detailTimeout == null) {
+            return  5000;
+        } else {
+            return detailTimeout;
+        }
+    }
+
+    /**
+     * Sets the value of the detailTimeout property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setDetailTimeout(Integer value) {
+        this.detailTimeout = value;
+    }
+
+    /**
+     * Gets the value of the writeTimeout property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public int getWriteTimeout() {
+        if (writeTimeout == null) {
+            return  5000;
+        } else {
+            return writeTimeout;
+        }
+    }
+
+    /**
+     * Sets the value of the writeTimeout property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setWriteTimeout(Integer value) {
+        this.writeTimeout = value;
+    }
+
+    /**
+     * Gets the value of the objectDeadline property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public int getObjectDeadline() {
+        if (objectDeadline == null) {
+            return  0;
+        } else {
+            return objectDeadline;
+        }
+    }
+
+    /**
+     * Sets the value of the objectDeadline property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setObjectDeadline(Integer value) {
+        this.objectDeadline = value;
+    }
+
+    /**
+     * Gets the value of the compression property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public boolean isCompression() {
+        if (compression == null) {
+            return  true;
+        } else {
+            return compression;
+        }
+    }
+
+    /**
+     * Sets the value of the compression property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setCompression(Boolean value) {
+        this.compression = value;
+    }
+
+    /**
+     * Gets the value of the compressRequests property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public boolean isCompressRequests() {
+        if (compressRequests == null) {
+            return  false;
+        } else {
+            return compressRequests;
+        }
+    }
+
+    /**
+     * Sets the value of the compressRequests property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setCompressRequests(Boolean value) {
+        this.compressRequests = value;
+    }
+
+    /**
+     * Gets the value of the ejectAfter property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public int getEjectAfter() {
+        if (ejectAfter == null) {
+            return  3;
+        } else {
+            return ejectAfter;
+        }
+    }
+
+    /**
+     * Sets the value of the ejectAfter property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setEjectAfter(Integer value) {
+        this.ejectAfter = value;
+    }
+
+    /**
+     * Gets the value of the ejectionTime property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public int getEjectionTime() {
+        if (ejectionTime == null) {
+            return  30000;
+        } else {
+            return ejectionTime;
+        }
+    }
+
+    /**
+     * Sets the value of the ejectionTime property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setEjectionTime(Integer value) {
+        this.ejectionTime = value;
+    }
+
+}
@@ -2,9 +2,7 @@ package org.lsc.plugins.connectors.fusiondirectory.utils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 import org.lsc.exception.LscServiceException;
@@ -12,9 +10,6 @@ import org.lsc.plugins.connectors.fusiondirectory.FusionDirectoryDao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-
 public class FusionDirectoryAPI {
 	private static final Logger LOGGER = LoggerFactory.getLogger(FusionDirectoryAPI.class);
 
@@ -48,14 +43,7 @@ public class FusionDirectoryAPI {
 		Optional<String> base = Optional.ofNullable(baseString).filter(f -> !f.trim().isEmpty());
 		Optional<String> filter = Optional.ofNullable(filterString).filter(f -> !f.trim().isEmpty());
 		List<String> results = new ArrayList<>();
-		ObjectNode root = dao.getList(entity, base, Optional.empty(), filter);
-		if (root != null) {
-			Iterator<Map.Entry<String, JsonNode>> iter = root.fields();
-			while (iter.hasNext()) {
-				Map.Entry<String, JsonNode> entry = iter.next();
-				results.add(entry.getKey());
-			}
-		}
+		dao.getList(entity, base, Optional.empty(), filter, (dn, pivotValue) -> results.add(dn));
 		return results;
 	}
 
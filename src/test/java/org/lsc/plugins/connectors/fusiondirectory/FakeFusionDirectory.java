@@ -0,0 +1,235 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.lsc.plugins.connectors.fusiondirectory.generated.ServiceSettings;
+import org.lsc.plugins.connectors.fusiondirectory.generated.Transport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A FusionDirectory REST API answering requests with a handler, for tests.
+ * Each login opens a new session, and the requests of a session are handled one at a time,
+ * as FusionDirectory does.
+ */
+class FakeFusionDirectory implements AutoCloseable {
+
+	static final String PATH = "/rest.php/v1";
+
+	static {
+		// Send small responses at once instead of waiting for the client acknowledgement
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	interface Handler {
+		Reply handle(Request request) throws Exception;
+	}
+
+	static final class Request {
+		final String method;
+		final String path;
+		final String query;
+		final String session;
+		final String body;
+
+		Request(String method, String path, String query, String session, String body) {
+			this.method = method;
+			this.path = path;
+			this.query = query;
+			this.session = session;
+			this.body = body;
+		}
+
+		@Override
+		public String toString() {
+			return method + " " + path + (query != null ? "?" + query : "");
+		}
+	}
+
+	static final class Reply {
+		final int status;
+		final String body;
+
+		Reply(int status, String body) {
+			this.status = status;
+			this.body = body;
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final List<Request> requests = Collections.synchronizedList(new ArrayList<>());
+	private final Map<String, ReentrantLock> sessionLocks = new ConcurrentHashMap<>();
+	private final AtomicInteger logins = new AtomicInteger();
+	private final AtomicInteger logouts = new AtomicInteger();
+	private final AtomicInteger busySessions = new AtomicInteger();
+	private final AtomicInteger maxBusySessions = new AtomicInteger();
+	private volatile Handler handler;
+
+	FakeFusionDirectory(Handler handler) throws IOException {
+		this.handler = handler;
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(executor);
+		server.createContext(PATH, this::exchange);
+		server.start();
+	}
+
+	static Reply reply(int status, String body) {
+		return new Reply(status, body);
+	}
+
+	static Reply ok(String body) {
+		return new Reply(200, body);
+	}
+
+	String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + PATH;
+	}
+
+	/**
+	 * Settings of a DAO using the jdk client, which has no dependency.
+	 */
+	static ServiceSettings settings() {
+		ServiceSettings settings = new ServiceSettings();
+		Transport transport = new Transport();
+		transport.setClient("jdk");
+		settings.setTransport(transport);
+		settings.setRetryBackoff(1);
+		return settings;
+	}
+
+	FusionDirectoryDao newDao(ServiceSettings settings) {
+		return new FusionDirectoryDao(getUrl(), "admin", "secret", settings);
+	}
+
+	void setHandler(Handler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * The requests handled, except logins and logouts.
+	 */
+	List<Request> getRequests() {
+		synchronized (requests) {
+			return new ArrayList<>(requests);
+		}
+	}
+
+	int getLogins() {
+		return logins.get();
+	}
+
+	int getLogouts() {
+		return logouts.get();
+	}
+
+	/**
+	 * The highest number of sessions used by requests at the same time.
+	 */
+	int getMaxBusySessions() {
+		return maxBusySessions.get();
+	}
+
+	private void exchange(HttpExchange exchange) throws IOException {
+		try {
+			String path = exchange.getRequestURI().getPath().substring(PATH.length());
+			String session = exchange.getRequestHeaders().getFirst(FusionDirectoryHttp.SESSION_TOKEN);
+			String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+			if (path.equals("/login")) {
+				send(exchange, ok("\"session-" + logins.incrementAndGet() + "\""));
+				return;
+			}
+			if (path.equals("/logout")) {
+				logouts.incrementAndGet();
+				send(exchange, ok("true"));
+				return;
+			}
+			Request request = new Request(exchange.getRequestMethod(), path, exchange.getRequestURI().getQuery(),
+					session, body);
+			requests.add(request);
+			ReentrantLock lock = sessionLocks.computeIfAbsent(String.valueOf(session), s -> new ReentrantLock());
+			lock.lock();
+			try {
+				maxBusySessions.accumulateAndGet(busySessions.incrementAndGet(), Math::max);
+				send(exchange, handler.handle(request));
+			} finally {
+				busySessions.decrementAndGet();
+				lock.unlock();
+			}
+		} catch (Exception e) {
+			send(exchange, reply(500, "\"" + e + "\""));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static void send(HttpExchange exchange, Reply reply) throws IOException {
+		byte[] body = reply.body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(reply.status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lsc.LscDatasets;
+import org.lsc.beans.IBean;
+import org.lsc.plugins.connectors.fusiondirectory.generated.Attribute;
+import org.lsc.plugins.connectors.fusiondirectory.generated.Attributes;
+import org.lsc.plugins.connectors.fusiondirectory.generated.AttributesTab;
+
+class FusionDirectoryAbstractServiceTest {
+
+	private static final String OLD_DN = "uid=jdoe,ou=people,ou=old,dc=example,dc=com";
+	private static final String NEW_DN = "uid=jdoe,ou=people,ou=new,dc=example,dc=com";
+
+	private FakeFusionDirectory server;
+	private FusionDirectoryDao dao;
+	private TestService service;
+	// dn the search finds the object at
+	private volatile String currentDn = NEW_DN;
+	// status answered for writes to the old dn
+	private volatile int oldDnStatus = FusionDirectoryDao.NOT_FOUND;
+
+	private static final class TestService extends FusionDirectoryAbstractService {
+		TestService(FusionDirectoryDao dao) {
+			this.dao = dao;
+			this.entity = "USER";
+			this.pivot = Optional.of("uid");
+			this.base = Optional.empty();
+			this.filter = Optional.empty();
+			this.allFilter = Optional.empty();
+			this.oneFilter = Optional.empty();
+			this.cleanFilter = Optional.empty();
+			this.template = Optional.empty();
+			this.dnCache = newDnCache(10);
+			Attribute cn = new Attribute();
+			cn.setValue("cn");
+			AttributesTab tab = new AttributesTab();
+			tab.setName("user");
+			tab.getAttribute().add(cn);
+			Attributes attributesSettings = new Attributes();
+			attributesSettings.getTab().add(tab);
+			this.attributes = new FusionDirectoryAttributes(attributesSettings);
+			prepareFilters();
+		}
+
+		@Override
+		public IBean getBean(String pivotName, LscDatasets pivotAttributes, boolean fromSameService) {
+			return null;
+		}
+	}
+
+	@BeforeEach
+	void start() throws Exception {
+		server = new FakeFusionDirectory(request -> {
+			if (request.method.equals("GET")) {
+				return FakeFusionDirectory.ok("{\"" + currentDn + "\":{\"uid\":[\"jdoe\"]}}");
+			} else if (request.path.contains(OLD_DN)) {
+				return FakeFusionDirectory.reply(oldDnStatus, "[\"Error\"]");
+			}
+			return FakeFusionDirectory.ok("true");
+		});
+		dao = server.newDao(FakeFusionDirectory.settings());
+		service = new TestService(dao);
+	}
+
+	@AfterEach
+	void stop() {
+		dao.close();
+		server.close();
+	}
+
+	private List<String> requests() {
+		return server.getRequests().stream()
+				.map(request -> request.method + (request.path.contains(OLD_DN) ? " old"
+						: request.path.contains(NEW_DN) ? " new" : ""))
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	void deleteSearchesMovedObjectAgain() throws Exception {
+		service.dnCache.put("jdoe", OLD_DN);
+		assertTrue(service.delete("jdoe"));
+		assertEquals(Arrays.asList("DELETE old", "GET", "DELETE new"), requests());
+	}
+
+	@Test
+	void modifySearchesMovedObjectAgain() throws Exception {
+		service.dnCache.put("jdoe", OLD_DN);
+		Map<String, List<Object>> modifications = new HashMap<>();
+		modifications.put("cn", new ArrayList<>(Arrays.asList("John Doe")));
+		assertTrue(service.modify("jdoe", modifications));
+		assertEquals(Arrays.asList("PATCH old", "GET", "PATCH new"), requests());
+		assertEquals(NEW_DN, service.dnCache.get("jdoe"));
+	}
+
+	@Test
+	void deleteFailsWhenObjectHasNotMoved() {
+		currentDn = OLD_DN;
+		service.dnCache.put("jdoe", OLD_DN);
+		FusionDirectoryStatusException e = assertThrows(FusionDirectoryStatusException.class,
+				() -> service.delete("jdoe"));
+		assertEquals(FusionDirectoryDao.NOT_FOUND, e.getStatus());
+		assertEquals(Arrays.asList("DELETE old", "GET"), requests());
+	}
+
+	@Test
+	void deleteDoesNotSearchAfterOtherErrors() {
+		oldDnStatus = 403;
+		service.dnCache.put("jdoe", OLD_DN);
+		FusionDirectoryStatusException e = assertThrows(FusionDirectoryStatusException.class,
+				() -> service.delete("jdoe"));
+		assertEquals(403, e.getStatus());
+		assertEquals(Arrays.asList("DELETE old"), requests());
+	}
+
+	@Test
+	void pivotValuesAreEscapedInSearches() throws Exception {
+		LscDatasets pivots = new LscDatasets();
+		pivots.put("uid", "j*)(uid=*");
+		service.findFirstByPivots(pivots, false);
+		assertTrue(server.getRequests().get(0).query.contains("filter=(|(uid=j\\2a\\29\\28uid=\\2a))"),
+				server.getRequests().get(0).query);
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lsc.exception.LscServiceException;
+import org.lsc.plugins.connectors.fusiondirectory.FusionDirectoryAttributes.MappedAttribute;
+import org.lsc.plugins.connectors.fusiondirectory.generated.Attribute;
+import org.lsc.plugins.connectors.fusiondirectory.generated.Attributes;
+import org.lsc.plugins.connectors.fusiondirectory.generated.AttributesTab;
+
+class FusionDirectoryAttributesTest {
+
+	private AttributesTab userTab;
+	private AttributesTab mailTab;
+	private FusionDirectoryAttributes attributes;
+
+	private static Attribute attribute(String name, boolean multiple) {
+		Attribute attribute = new Attribute();
+		attribute.setValue(name);
+		attribute.setMultiple(multiple);
+		return attribute;
+	}
+
+	private static AttributesTab tab(String name, boolean clearInPatch, Attribute... tabAttributes) {
+		AttributesTab tab = new AttributesTab();
+		tab.setName(name);
+		tab.setClearInPatch(clearInPatch);
+		tab.getAttribute().addAll(Arrays.asList(tabAttributes));
+		return tab;
+	}
+
+	@BeforeEach
+	void setUp() {
+		userTab = tab("user", true, attribute("cn", false), attribute("description;lang-fr", false),
+				attribute("telephoneNumber", true));
+		mailTab = tab("mailAccount", false, attribute("mail", false), attribute("cn", false));
+		Attributes settings = new Attributes();
+		settings.getTab().add(userTab);
+		settings.getTab().add(mailTab);
+		attributes = new FusionDirectoryAttributes(settings);
+	}
+
+	@Test
+	void namesAreKeptInConfigurationOrder() {
+		assertEquals(List.of("cn", "description;lang-fr", "telephoneNumber", "mail", "cn"), attributes.getNames());
+		assertEquals(List.of(userTab, mailTab), attributes.getTabs());
+		assertEquals(3, attributes.getAttributes(userTab).size());
+		assertTrue(attributes.getAttributes(new AttributesTab()).isEmpty());
+	}
+
+	@Test
+	void attributesAreFoundIgnoringCase() throws Exception {
+		MappedAttribute telephoneNumber = attributes.get("TELEPHONENUMBER");
+		assertSame(telephoneNumber, attributes.get("telephonenumber"));
+		assertEquals("user", telephoneNumber.getTab());
+		assertEquals("telephoneNumber", telephoneNumber.getName());
+		assertTrue(telephoneNumber.isMultiple());
+	}
+
+	@Test
+	void lastConfiguredTabWins() throws Exception {
+		assertEquals("mailAccount", attributes.get("cn").getTab());
+	}
+
+	@Test
+	void unknownAttributeIsRejected() {
+		assertThrows(LscServiceException.class, () -> attributes.get("sn"));
+	}
+
+	@Test
+	void clearInPatchOnlyAppliesToSingleValuedAttributesWithoutOption() throws Exception {
+		assertTrue(attributes.getAttributes(userTab).get(0).isClearedInPatch());
+		assertFalse(attributes.get("description;lang-fr").isClearedInPatch());
+		assertFalse(attributes.get("telephoneNumber").isClearedInPatch());
+		assertFalse(attributes.get("mail").isClearedInPatch());
+	}
+
+	@Test
+	void ldapAttributesDropOptionsAndCanBeModified() {
+		Set<String> ldapAttributes = attributes.getLdapAttributes();
+		assertEquals(4, ldapAttributes.size());
+		assertTrue(ldapAttributes.contains("DESCRIPTION"));
+		ldapAttributes.add("uid");
+		assertFalse(attributes.getLdapAttributes().contains("uid"));
+	}
+
+	@Test
+	void optionValuesAreFilteredAndStripped() throws Exception {
+		MappedAttribute description = attributes.get("Description;Lang-FR");
+		assertTrue(description.isOption());
+		assertEquals("description", description.getLdapName());
+		assertEquals(List.of("Bonjour", "Salut"), description.filterAndStripOption(
+				List.of("lang-fr;Bonjour", "lang-en;Hello", "LANG-FR;Salut")));
+		assertEquals(List.of("Bonjour"), description.filterAndStripOption("lang-fr;Bonjour"));
+		assertTrue(attributes.get("mail").filterAndStripOption(List.of("lang-fr;Bonjour")).isEmpty());
+	}
+
+	@Test
+	void optionValuesAreAddedToTheOtherOptions() throws Exception {
+		MappedAttribute description = attributes.get("description;lang-fr");
+		assertEquals(List.of("lang-en;Hello", "lang-fr;Bonjour"),
+				description.addOptionValues("lang-en;Hello", List.of("Bonjour")));
+		assertEquals(List.of("lang-en;Hello", "lang-de;Hallo", "lang-fr;Bonjour"),
+				description.addOptionValues(List.of("lang-en;Hello", "lang-de;Hallo"), List.of("Bonjour")));
+		assertEquals(List.of("lang-fr;Bonjour"), description.addOptionValues(null, List.of("Bonjour")));
+	}
+}
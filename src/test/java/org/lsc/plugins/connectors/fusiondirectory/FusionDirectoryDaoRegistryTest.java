@@ -0,0 +1,107 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.lsc.plugins.connectors.fusiondirectory.generated.ServiceSettings;
+
+class FusionDirectoryDaoRegistryTest {
+
+	private static final String URL = "http://localhost:1/rest.php/v1";
+
+	@Test
+	void servicesWithTheSameSettingsShareTheirDao() {
+		FusionDirectoryDao first = FusionDirectoryDaoRegistry.acquire(URL, "admin", "secret",
+				FakeFusionDirectory.settings());
+		FusionDirectoryDao second = FusionDirectoryDaoRegistry.acquire(URL, "admin", "secret",
+				FakeFusionDirectory.settings());
+		try {
+			assertSame(first, second);
+		} finally {
+			FusionDirectoryDaoRegistry.release(first);
+			FusionDirectoryDaoRegistry.release(second);
+		}
+	}
+
+	@Test
+	void servicesWithOtherSettingsGetTheirOwnDao() {
+		ServiceSettings retrying = FakeFusionDirectory.settings();
+		retrying.setMaxRetries(5);
+		ServiceSettings slow = FakeFusionDirectory.settings();
+		slow.getTransport().setListTimeout(600000);
+		FusionDirectoryDao first = FusionDirectoryDaoRegistry.acquire(URL, "admin", "secret",
+				FakeFusionDirectory.settings());
+		FusionDirectoryDao second = FusionDirectoryDaoRegistry.acquire(URL, "admin", "secret", retrying);
+		FusionDirectoryDao third = FusionDirectoryDaoRegistry.acquire(URL, "admin", "secret", slow);
+		FusionDirectoryDao fourth = FusionDirectoryDaoRegistry.acquire(URL, "admin", "other",
+				FakeFusionDirectory.settings());
+		try {
+			assertNotSame(first, second);
+			assertNotSame(first, third);
+			assertNotSame(second, third);
+			assertNotSame(first, fourth);
+		} finally {
+			FusionDirectoryDaoRegistry.release(first);
+			FusionDirectoryDaoRegistry.release(second);
+			FusionDirectoryDaoRegistry.release(third);
+			FusionDirectoryDaoRegistry.release(fourth);
+		}
+	}
+
+	@Test
+	void daoIsNotSharedOnceReleased() {
+		FusionDirectoryDao first = FusionDirectoryDaoRegistry.acquire(URL, "admin", "secret",
+				FakeFusionDirectory.settings());
+		FusionDirectoryDaoRegistry.release(first);
+		FusionDirectoryDao second = FusionDirectoryDaoRegistry.acquire(URL, "admin", "secret",
+				FakeFusionDirectory.settings());
+		try {
+			assertNotSame(first, second);
+		} finally {
+			FusionDirectoryDaoRegistry.release(second);
+		}
+	}
+}
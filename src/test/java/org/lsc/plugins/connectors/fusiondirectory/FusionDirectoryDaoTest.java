@@ -0,0 +1,138 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.lsc.plugins.connectors.fusiondirectory.generated.ServiceSettings;
+
+class FusionDirectoryDaoTest {
+
+	private static final String DN = "uid=jdoe,ou=people,dc=example,dc=com";
+
+	private FakeFusionDirectory server;
+	private FusionDirectoryDao dao;
+
+	@AfterEach
+	void stop() {
+		if (dao != null) {
+			dao.close();
+		}
+		if (server != null) {
+			server.close();
+		}
+	}
+
+	@Test
+	void attributesAreDeletedOneAfterTheOther() throws Exception {
+		AtomicInteger deleting = new AtomicInteger();
+		AtomicInteger maxDeleting = new AtomicInteger();
+		server = new FakeFusionDirectory(request -> {
+			maxDeleting.accumulateAndGet(deleting.incrementAndGet(), Math::max);
+			Thread.sleep(20);
+			deleting.decrementAndGet();
+			return FakeFusionDirectory.ok("true");
+		});
+		dao = server.newDao(FakeFusionDirectory.settings());
+		List<String> deleted = Arrays.asList("user/title", "user/mobile", "mail/mail");
+		dao.modify("USER", DN, new HashMap<>(), deleted);
+		assertEquals(1, maxDeleting.get());
+		assertEquals(deleted, server.getRequests().stream()
+				.map(request -> request.path.substring(request.path.indexOf(DN) + DN.length() + 1))
+				.collect(Collectors.toList()));
+	}
+
+	@Test
+	void attributesAreDeletedConcurrentlyWhenEnabled() throws Exception {
+		AtomicInteger deleting = new AtomicInteger();
+		AtomicInteger maxDeleting = new AtomicInteger();
+		server = new FakeFusionDirectory(request -> {
+			maxDeleting.accumulateAndGet(deleting.incrementAndGet(), Math::max);
+			Thread.sleep(200);
+			deleting.decrementAndGet();
+			return FakeFusionDirectory.ok("true");
+		});
+		dao = server.newDao(FakeFusionDirectory.settings());
+		dao.modify("USER", DN, new HashMap<>(), Arrays.asList("user/title", "user/mobile", "mail/mail"), true);
+		assertEquals(3, server.getRequests().size());
+		assertTrue(maxDeleting.get() > 1, maxDeleting.get() + " deletions at once");
+	}
+
+	@Test
+	@Timeout(10)
+	void overloadedCreateIsCheckedWithinTheThrottleLimit() throws Exception {
+		AtomicInteger posts = new AtomicInteger();
+		server = new FakeFusionDirectory(request -> {
+			if (request.method.equals("POST")) {
+				return posts.incrementAndGet() == 1 ? FakeFusionDirectory.reply(503, "[\"Busy\"]")
+						: FakeFusionDirectory.ok("\"" + DN + "\"");
+			}
+			return FakeFusionDirectory.ok("{}");
+		});
+		ServiceSettings settings = FakeFusionDirectory.settings();
+		settings.setMaxInFlight(1);
+		dao = server.newDao(settings);
+		List<String> found = new ArrayList<>();
+		Optional<String> created = dao.create("USER", new HashMap<>(), Optional.empty(), () -> {
+			// Searching whether the object exists needs the throttle slot of the failed create
+			dao.getList("USER", Optional.empty(), Optional.of("uid"), Optional.of("(uid=jdoe)"),
+					(dn, pivot) -> found.add(dn));
+			return found.stream().findFirst();
+		});
+		assertEquals(Optional.of(DN), created);
+		assertEquals(Arrays.asList("POST", "GET", "POST"), server.getRequests().stream()
+				.map(request -> request.method).collect(Collectors.toList()));
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.lsc.LscDatasets;
+
+class FusionDirectoryFilterTemplateTest {
+
+	private static LscDatasets pivots(String... namesAndValues) {
+		LscDatasets pivots = new LscDatasets();
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			pivots.put(namesAndValues[i], namesAndValues[i + 1]);
+		}
+		return pivots;
+	}
+
+	private static String escape(String value) {
+		return FusionDirectoryFilterTemplate.appendEscaped(new StringBuilder(), value).toString();
+	}
+
+	@Test
+	void specialCharactersAreEscaped() {
+		assertEquals("a\\2ab\\28c\\29d\\5ce\\00f", escape("a*b(c)d\\e\0f"));
+		assertEquals("\\5c2a", escape("\\2a"));
+	}
+
+	@Test
+	void otherCharactersAreKept() {
+		assertEquals("Jérôme O'Neil, 日本 = & | ! ~ <>", escape("Jérôme O'Neil, 日本 = & | ! ~ <>"));
+		assertEquals("", escape(""));
+	}
+
+	@Test
+	void placeholdersAreReplacedByEscapedPivotValues() {
+		FusionDirectoryFilterTemplate template = new FusionDirectoryFilterTemplate("(&(uid={uid})(mail={mail}))");
+		assertEquals("(&(uid=j\\2a)(mail=jdoe@example.com))",
+				template.render(pivots("uid", "j*", "mail", "jdoe@example.com")));
+	}
+
+	@Test
+	void placeholdersIgnoreCase() {
+		FusionDirectoryFilterTemplate template = new FusionDirectoryFilterTemplate("(uid={UID})");
+		assertEquals("(uid=jdoe)", template.render(pivots("uid", "jdoe")));
+	}
+
+	@Test
+	void placeholdersWithoutPivotAreKept() {
+		FusionDirectoryFilterTemplate template = new FusionDirectoryFilterTemplate("(&(uid={uid})(sn={sn}))");
+		assertEquals("(&(uid=jdoe)(sn={sn}))", template.render(pivots("uid", "jdoe")));
+	}
+
+	@Test
+	void placeholderIsRepeated() {
+		FusionDirectoryFilterTemplate template = new FusionDirectoryFilterTemplate("(|(uid={uid})(mail={uid}@*))");
+		assertEquals("(|(uid=a\\29)(mail=a\\29@*))", template.render(pivots("uid", "a)")));
+	}
+
+	@Test
+	void filterWithoutPlaceholderIsKept() {
+		assertEquals("(objectClass=*)", new FusionDirectoryFilterTemplate("(objectClass=*)").render(pivots()));
+		assertEquals("(cn={unclosed)", new FusionDirectoryFilterTemplate("(cn={unclosed)").render(pivots()));
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.lsc.plugins.connectors.fusiondirectory.FusionDirectoryHttp.Response;
+import org.lsc.plugins.connectors.fusiondirectory.FusionDirectoryHttp.Target;
+import org.lsc.plugins.connectors.fusiondirectory.generated.Transport;
+
+import com.sun.net.httpserver.HttpServer;
+
+class FusionDirectoryJdkHttpTest {
+
+	private HttpServer server;
+	private FusionDirectoryJdkHttp http;
+	private final CountDownLatch stop = new CountDownLatch(1);
+	// Body chunks sent by the server, and the milliseconds between them
+	private volatile String[] chunks;
+	private volatile long pause;
+
+	@BeforeEach
+	void start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		server.createContext("/", exchange -> {
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream out = exchange.getResponseBody()) {
+				for (String chunk : chunks) {
+					out.write(chunk.getBytes(StandardCharsets.UTF_8));
+					out.flush();
+					if (stop.await(pause, TimeUnit.MILLISECONDS)) {
+						return;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (IOException e) {
+				// The client gave up
+			}
+		});
+		server.start();
+		Transport transport = new Transport();
+		transport.setClient("jdk");
+		http = new FusionDirectoryJdkHttp(transport);
+	}
+
+	@AfterEach
+	void stop() {
+		stop.countDown();
+		http.close();
+		server.stop(0);
+	}
+
+	private Response get(int timeout) throws Exception {
+		return http.send(FusionDirectoryHttp.GET,
+				new Target("http://127.0.0.1:" + server.getAddress().getPort()).path("objects"), null, null, true,
+				timeout);
+	}
+
+	@Test
+	@Timeout(10)
+	void stalledBodyTimesOut() throws Exception {
+		chunks = new String[] { "[\"partial", "\"]" };
+		pause = 60000;
+		long start = System.nanoTime();
+		try (Response response = get(300); InputStream body = response.getBody()) {
+			assertEquals(200, response.getStatus());
+			assertThrows(HttpTimeoutException.class, body::readAllBytes);
+		}
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+	}
+
+	@Test
+	@Timeout(10)
+	void steadyBodyIsReadPastTheTimeout() throws Exception {
+		chunks = new String[] { "[", "\"a\",", "\"b\",", "\"c\",", "\"d\"", "]" };
+		pause = 100;
+		try (Response response = get(300)) {
+			assertEquals("[\"a\",\"b\",\"c\",\"d\"]", response.readString());
+		}
+	}
+
+	@Test
+	@Timeout(10)
+	void bodyIsReadWithoutTimeout() throws Exception {
+		chunks = new String[] { "[", "]" };
+		pause = 500;
+		try (Response response = get(0)) {
+			assertEquals("[]", response.readString());
+		}
+	}
+}
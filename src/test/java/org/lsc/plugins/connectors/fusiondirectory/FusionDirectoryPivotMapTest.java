@@ -0,0 +1,255 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lsc.LscDatasets;
+
+class FusionDirectoryPivotMapTest {
+
+	private static final String SUFFIX = "ou=people,dc=example,dc=com";
+
+	private static String dn(String uid) {
+		return "uid=" + uid + "," + SUFFIX;
+	}
+
+	private static List<String> keys(FusionDirectoryPivotMap map) {
+		List<String> keys = new ArrayList<>();
+		for (Entry<String, LscDatasets> entry : map.entrySet()) {
+			keys.add(entry.getKey());
+		}
+		return keys;
+	}
+
+	@Test
+	void objectsAreReadBack() {
+		FusionDirectoryPivotMap map = new FusionDirectoryPivotMap("uid");
+		map.put("jdoe", dn("jdoe"));
+		map.put("Élodie", dn("Élodie"));
+		assertEquals(2, map.size());
+		assertTrue(map.containsKey("jdoe"));
+		assertFalse(map.containsKey("JDOE"));
+		assertFalse(map.containsKey(1));
+		LscDatasets datasets = map.get("Élodie");
+		assertEquals(dn("Élodie"), datasets.getStringValueAttribute("dn"));
+		assertEquals("Élodie", datasets.getStringValueAttribute("uid"));
+		assertNull(map.get("unknown"));
+	}
+
+	@Test
+	void dnsAreRebuiltFromTheirRdnAndSuffix() {
+		FusionDirectoryPivotMap map = new FusionDirectoryPivotMap("uid");
+		map.put("escaped", "cn=Doe\\, John," + SUFFIX);
+		map.put("root", "dc=com");
+		map.put("none", (String) null);
+		assertEquals("cn=Doe\\, John," + SUFFIX, map.get("escaped").getStringValueAttribute("dn"));
+		assertEquals("dc=com", map.get("root").getStringValueAttribute("dn"));
+		assertNull(map.get("none").getStringValueAttribute("dn"));
+	}
+
+	@Test
+	void insertionOrderIsKept() {
+		FusionDirectoryPivotMap map = new FusionDirectoryPivotMap("uid");
+		for (int i = 0; i < 100; i++) {
+			map.put("user" + (99 - i), dn("user" + i));
+		}
+		map.put("user50", dn("moved"));
+		List<String> keys = keys(map);
+		assertEquals(100, keys.size());
+		assertEquals("user99", keys.get(0));
+		assertEquals("user50", keys.get(49));
+		assertEquals("user0", keys.get(99));
+		assertEquals(dn("moved"), map.get("user50").getStringValueAttribute("dn"));
+	}
+
+	@Test
+	void putReturnsThePreviousObject() {
+		FusionDirectoryPivotMap map = new FusionDirectoryPivotMap("uid");
+		assertNull(map.put("jdoe", dn("old")));
+		LscDatasets datasets = new LscDatasets();
+		datasets.put("dn", dn("new"));
+		assertEquals(dn("old"), map.put("jdoe", datasets).getStringValueAttribute("dn"));
+		assertEquals(1, map.size());
+		assertEquals(dn("new"), map.get("jdoe").getStringValueAttribute("dn"));
+	}
+
+	@Test
+	void objectsAreRemoved() {
+		FusionDirectoryPivotMap map = new FusionDirectoryPivotMap("uid");
+		for (int i = 0; i < 10; i++) {
+			map.put("user" + i, dn("user" + i));
+		}
+		assertEquals(dn("user3"), map.remove("user3").getStringValueAttribute("dn"));
+		assertNull(map.remove("user3"));
+		Iterator<Entry<String, LscDatasets>> iterator = map.entrySet().iterator();
+		iterator.next();
+		iterator.remove();
+		assertThrows(IllegalStateException.class, iterator::remove);
+		assertEquals(8, map.size());
+		assertFalse(map.containsKey("user0"));
+		assertEquals(List.of("user1", "user2", "user4", "user5", "user6", "user7", "user8", "user9"), keys(map));
+		// A removed object can be added again
+		map.put("user3", dn("user3"));
+		assertEquals("user3", keys(map).get(8));
+		map.clear();
+		assertEquals(0, map.size());
+		assertFalse(map.entrySet().iterator().hasNext());
+	}
+
+	@Test
+	void sharedSuffixesAreStoredOnce() {
+		FusionDirectoryPivotMap map = new FusionDirectoryPivotMap("uid");
+		int objects = 100000;
+		for (int i = 0; i < objects; i++) {
+			map.put("user" + i, dn("user" + i));
+		}
+		long bytesPerObject = map.getMemory() / objects;
+		// About 8 bytes of pivot, 13 bytes of rdn and 16 bytes of indexes per object in arrays grown by doubling
+		assertTrue(bytesPerObject < 100, bytesPerObject + " bytes per object");
+		assertEquals(dn("user12345"), map.get("user12345").getStringValueAttribute("dn"));
+	}
+
+	private static long files(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.count();
+		}
+	}
+
+	@Test
+	void objectsAboveTheBudgetAreMovedToFiles(@TempDir Path directory) throws Exception {
+		FusionDirectoryPivotMap map = new FusionDirectoryPivotMap("uid", 8192, directory);
+		for (int i = 0; i < 1000; i++) {
+			map.put("user" + i, dn("user" + i));
+		}
+		assertTrue(files(directory) > 0);
+		assertTrue(map.getMemory() <= 8192);
+		assertEquals(1000, map.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(dn("user" + i), map.get("user" + i).getStringValueAttribute("dn"));
+		}
+		assertNull(map.get("user1000"));
+		assertEquals(1000, new HashSet<>(keys(map)).size());
+
+		// Objects in files are removed, or moved back to memory when replaced
+		assertEquals(dn("user0"), map.remove("user0").getStringValueAttribute("dn"));
+		assertFalse(map.containsKey("user0"));
+		assertEquals(dn("user1"), map.put("user1", dn("moved")).getStringValueAttribute("dn"));
+		assertEquals(dn("moved"), map.get("user1").getStringValueAttribute("dn"));
+		assertEquals(999, map.size());
+		assertEquals(999, keys(map).size());
+
+		map.clear();
+		assertEquals(0, files(directory));
+		assertEquals(0, map.size());
+		map.put("jdoe", dn("jdoe"));
+		assertNull(map.get("unknown"));
+	}
+
+	@Test
+	void closedFilesAreNotReportedAsMissing(@TempDir Path directory) throws Exception {
+		FusionDirectoryPivotMap map = new FusionDirectoryPivotMap("uid", 8192, directory);
+		for (int i = 0; i < 1000; i++) {
+			map.put("user" + i, dn("user" + i));
+		}
+		map.close();
+		assertEquals(0, files(directory));
+		assertThrows(IllegalStateException.class, () -> map.get("user0"));
+		assertThrows(IllegalStateException.class, () -> map.containsKey("user0"));
+	}
+
+	@Test
+	void readsRacingWithCloseFailCleanly(@TempDir Path directory) throws Exception {
+		FusionDirectoryPivotMap map = new FusionDirectoryPivotMap("uid", 8192, directory);
+		for (int i = 0; i < 5000; i++) {
+			map.put("user" + i, dn("user" + i));
+		}
+		AtomicReference<Throwable> unexpected = new AtomicReference<>();
+		CountDownLatch reading = new CountDownLatch(4);
+		List<Thread> readers = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			readers.add(Thread.ofPlatform().start(() -> {
+				reading.countDown();
+				try {
+					for (int i = 0; ; i = (i + 1) % 5000) {
+						LscDatasets datasets = map.get("user" + i);
+						if (datasets == null) {
+							// Objects left in memory are still found
+							throw new AssertionError("user" + i + " reported missing");
+						}
+					}
+				} catch (IllegalStateException e) {
+					// Expected once the files are closed
+				} catch (Throwable e) {
+					unexpected.set(e);
+				}
+			}));
+		}
+		reading.await();
+		Thread.sleep(20);
+		map.close();
+		for (Thread reader : readers) {
+			reader.join(10000);
+			assertFalse(reader.isAlive());
+		}
+		assertNull(unexpected.get());
+	}
+}
@@ -0,0 +1,261 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.lsc.exception.LscServiceException;
+import org.lsc.plugins.connectors.fusiondirectory.beans.Token;
+import org.lsc.plugins.connectors.fusiondirectory.generated.ServiceSettings;
+
+class FusionDirectorySessionPoolTest {
+
+	private static final int THREADS = 64;
+
+	private final AtomicInteger logins = new AtomicInteger();
+	private final List<Token> loggedOut = new ArrayList<>();
+
+	private final FusionDirectorySessionPool.SessionFactory factory = new FusionDirectorySessionPool.SessionFactory() {
+		@Override
+		public Token login() {
+			return new Token("session-" + logins.incrementAndGet());
+		}
+
+		@Override
+		public synchronized void logout(Token token) {
+			loggedOut.add(token);
+		}
+
+		@Override
+		public void expired(Token token) {
+		}
+	};
+
+	@Test
+	void releasedSessionIsReused() throws LscServiceException {
+		FusionDirectorySessionPool pool = new FusionDirectorySessionPool(0, -1, factory, Runnable::run);
+		Token token = pool.acquire();
+		pool.release(token);
+		assertSame(token, pool.acquire());
+		assertEquals(1, logins.get());
+	}
+
+	@Test
+	void takenSessionIsNotShared() throws LscServiceException {
+		FusionDirectorySessionPool pool = new FusionDirectorySessionPool(0, -1, factory, Runnable::run);
+		Token first = pool.acquire();
+		Token second = pool.acquire();
+		assertNotSame(first, second);
+		assertEquals(2, logins.get());
+	}
+
+	@Test
+	void invalidatedSessionIsNotReused() throws LscServiceException {
+		FusionDirectorySessionPool pool = new FusionDirectorySessionPool(1, -1, factory, Runnable::run);
+		Token token = pool.acquire();
+		pool.invalidate(token);
+		// Releasing it afterwards, as closing its response does, has no effect
+		pool.release(token);
+		assertNotSame(token, pool.acquire());
+		assertEquals(2, logins.get());
+	}
+
+	@Test
+	void failedLoginFreesItsPlace() throws LscServiceException {
+		AtomicInteger attempts = new AtomicInteger();
+		FusionDirectorySessionPool pool = new FusionDirectorySessionPool(1, -1,
+				new FusionDirectorySessionPool.SessionFactory() {
+					@Override
+					public Token login() throws LscServiceException {
+						if (attempts.incrementAndGet() == 1) {
+							throw new LscServiceException("refused");
+						}
+						return new Token("session");
+					}
+
+					@Override
+					public void logout(Token token) {
+					}
+
+					@Override
+					public void expired(Token token) {
+					}
+				}, Runnable::run);
+		assertThrows(LscServiceException.class, pool::acquire);
+		assertEquals("session", pool.acquire().getSessionId());
+	}
+
+	@Test
+	void closeLogsOutIdleThenReleasedSessions() throws LscServiceException {
+		FusionDirectorySessionPool pool = new FusionDirectorySessionPool(0, -1, factory, Runnable::run);
+		Token idle = pool.acquire();
+		Token taken = pool.acquire();
+		pool.release(idle);
+		pool.close();
+		assertEquals(List.of(idle), loggedOut);
+		pool.release(taken);
+		assertEquals(List.of(idle, taken), loggedOut);
+	}
+
+	@Test
+	void concurrentThreadsNeverShareASession() throws Exception {
+		FusionDirectorySessionPool pool = new FusionDirectorySessionPool(0, -1, factory, Runnable::run);
+		Set<Token> inUse = ConcurrentHashMap.newKeySet();
+		AtomicInteger shared = new AtomicInteger();
+		runThreads(() -> {
+			for (int i = 0; i < 100; i++) {
+				Token token = pool.acquire();
+				if (!inUse.add(token)) {
+					shared.incrementAndGet();
+				}
+				Thread.yield();
+				inUse.remove(token);
+				pool.release(token);
+			}
+			return null;
+		});
+		assertEquals(0, shared.get());
+		assertTrue(logins.get() <= THREADS, logins.get() + " sessions opened");
+	}
+
+	@Test
+	void boundedPoolMakesThreadsWait() throws Exception {
+		FusionDirectorySessionPool pool = new FusionDirectorySessionPool(4, -1, factory, Runnable::run);
+		AtomicInteger taken = new AtomicInteger();
+		AtomicInteger maxTaken = new AtomicInteger();
+		runThreads(() -> {
+			for (int i = 0; i < 20; i++) {
+				Token token = pool.acquire();
+				maxTaken.accumulateAndGet(taken.incrementAndGet(), Math::max);
+				Thread.sleep(1);
+				taken.decrementAndGet();
+				pool.release(token);
+			}
+			return null;
+		});
+		assertEquals(4, logins.get());
+		assertTrue(maxTaken.get() <= 4, maxTaken.get() + " sessions taken at once");
+	}
+
+	/**
+	 * FusionDirectory answers the requests of a session one at a time: 64 threads listing objects,
+	 * which takes 50 ms each, use up to 64 sessions at once, and wait for each other with a pool of 4.
+	 */
+	@Test
+	void contentionWith64Threads() throws Exception {
+		try (FakeFusionDirectory server = new FakeFusionDirectory(request -> {
+			Thread.sleep(50);
+			return FakeFusionDirectory.ok("{\"uid=a,dc=example,dc=com\":{\"uid\":[\"a\"]}}");
+		})) {
+			long unbounded = measureThroughput(server, 0);
+			int unboundedSessions = server.getMaxBusySessions();
+			long bounded = measureThroughput(server, 4);
+			System.out.println(String.format("%d threads: %d requests/s with one session per request, "
+					+ "%d requests/s with 4 sessions", THREADS, unbounded, bounded));
+			assertTrue(unboundedSessions > 4, unboundedSessions + " sessions used at once");
+			assertTrue(unbounded > 2 * bounded, unbounded + " requests/s against " + bounded);
+		}
+	}
+
+	private static long measureThroughput(FakeFusionDirectory server, int sessionPoolSize) throws Exception {
+		ServiceSettings settings = FakeFusionDirectory.settings();
+		settings.setSessionPoolSize(sessionPoolSize);
+		settings.getTransport().setMaxConnections(THREADS);
+		FusionDirectoryDao dao = server.newDao(settings);
+		int requestsPerThread = 3;
+		try {
+			// Open the sessions and connections first
+			runThreads(() -> list(dao));
+			long start = System.nanoTime();
+			runThreads(() -> {
+				for (int i = 0; i < requestsPerThread; i++) {
+					list(dao);
+				}
+				return null;
+			});
+			return THREADS * requestsPerThread * 1_000_000_000L / (System.nanoTime() - start);
+		} finally {
+			dao.close();
+		}
+	}
+
+	private static Void list(FusionDirectoryDao dao) throws LscServiceException {
+		dao.getList("USER", Optional.empty(), Optional.of("uid"), Optional.empty(), (dn, pivotValue) -> {
+		});
+		return null;
+	}
+
+	private interface Work {
+		Void run() throws Exception;
+	}
+
+	private static void runThreads(Work work) throws Exception {
+		ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Void>> done = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++) {
+				done.add(threads.submit(work::run));
+			}
+			for (Future<Void> future : done) {
+				future.get();
+			}
+		} finally {
+			threads.shutdown();
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class FusionDirectoryThrottleTest {
+
+	private static final long FAST = 0;
+
+	/**
+	 * Acquire as many requests as the throttle lets in at once, waiting a little for each.
+	 */
+	private static int acquireAll(FusionDirectoryThrottle throttle) throws InterruptedException {
+		int acquired = 0;
+		while (acquired < 1000) {
+			Thread thread = Thread.ofVirtual().start(() -> {
+				try {
+					throttle.acquire();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			if (!thread.join(Duration.ofMillis(100))) {
+				thread.interrupt();
+				thread.join();
+				return acquired;
+			}
+			acquired++;
+		}
+		return acquired;
+	}
+
+	private static void releaseAll(FusionDirectoryThrottle throttle, int count, long latencyNanos,
+			boolean overloaded) {
+		for (int i = 0; i < count; i++) {
+			throttle.release(latencyNanos, overloaded);
+		}
+	}
+
+	@Test
+	void limitStartsAtMaxInFlight() throws Exception {
+		FusionDirectoryThrottle throttle = new FusionDirectoryThrottle(4, 1000, 0);
+		assertEquals(4, acquireAll(throttle));
+		throttle.release(FAST, false);
+		assertEquals(1, acquireAll(throttle));
+	}
+
+	@Test
+	void overloadHalvesTheLimitOncePerRoundTrip() throws Exception {
+		FusionDirectoryThrottle throttle = new FusionDirectoryThrottle(8, 1000, 0);
+		assertEquals(8, acquireAll(throttle));
+		Thread.sleep(2);
+		throttle.release(TimeUnit.MILLISECONDS.toNanos(1), true);
+		// Answers to the same congestion do not shrink the limit again
+		releaseAll(throttle, 7, TimeUnit.SECONDS.toNanos(10), true);
+		assertEquals(4, acquireAll(throttle));
+	}
+
+	@Test
+	void slowAnswersShrinkTheLimit() throws Exception {
+		FusionDirectoryThrottle throttle = new FusionDirectoryThrottle(10, 1, 0);
+		assertEquals(10, acquireAll(throttle));
+		Thread.sleep(5);
+		releaseAll(throttle, 10, TimeUnit.MILLISECONDS.toNanos(2), false);
+		assertEquals(9, acquireAll(throttle));
+	}
+
+	@Test
+	void limitNeverGoesBelowOne() throws Exception {
+		FusionDirectoryThrottle throttle = new FusionDirectoryThrottle(4, 1000, 0);
+		for (int i = 0; i < 5; i++) {
+			int acquired = acquireAll(throttle);
+			assertTrue(acquired >= 1);
+			Thread.sleep(2);
+			throttle.release(FAST, true);
+			releaseAll(throttle, acquired - 1, TimeUnit.SECONDS.toNanos(10), true);
+		}
+		assertEquals(1, acquireAll(throttle));
+	}
+
+	@Test
+	void limitGrowsByOneRequestPerRoundTrip() throws Exception {
+		FusionDirectoryThrottle throttle = new FusionDirectoryThrottle(8, 1000, 0);
+		assertEquals(8, acquireAll(throttle));
+		Thread.sleep(2);
+		throttle.release(FAST, true);
+		releaseAll(throttle, 7, FAST, false);
+		// 4 + 7 increases of 1/limit
+		assertEquals(5, acquireAll(throttle));
+		releaseAll(throttle, 5, FAST, false);
+		assertEquals(6, acquireAll(throttle));
+		releaseAll(throttle, 6, FAST, false);
+		releaseAll(throttle, acquireAll(throttle), FAST, false);
+		releaseAll(throttle, acquireAll(throttle), FAST, false);
+		assertEquals(8, acquireAll(throttle));
+	}
+
+	@Test
+	void noLimitWhenDisabled() throws Exception {
+		FusionDirectoryThrottle throttle = new FusionDirectoryThrottle(0, 1000, 0);
+		assertEquals(1000, acquireAll(throttle));
+		throttle.release(FAST, true);
+		assertEquals(1000, acquireAll(throttle));
+	}
+
+	@Test
+	void tokenBucketCapsTheRate() throws Exception {
+		FusionDirectoryThrottle throttle = new FusionDirectoryThrottle(0, 1000, 50);
+		long start = System.nanoTime();
+		// The bucket starts full
+		for (int i = 0; i < 50; i++) {
+			throttle.acquire();
+		}
+		long burst = System.nanoTime() - start;
+		for (int i = 0; i < 25; i++) {
+			throttle.acquire();
+		}
+		long elapsed = System.nanoTime() - start;
+		assertTrue(burst < TimeUnit.MILLISECONDS.toNanos(200), "burst took " + burst + " ns");
+		assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(450), "75 requests took " + elapsed + " ns");
+		assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(1500), "75 requests took " + elapsed + " ns");
+	}
+}
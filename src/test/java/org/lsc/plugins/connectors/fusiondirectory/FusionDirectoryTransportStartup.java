@@ -0,0 +1,98 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.lsc.plugins.connectors.fusiondirectory.generated.ServiceSettings;
+
+/**
+ * Measure what a short run costs with a transport client: the time from the JVM start until a first
+ * listing is read, and the resident memory then. Run it in a new JVM for each client, with the test
+ * classpath, for example:
+ * <pre>
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) \
+ *     org.lsc.plugins.connectors.fusiondirectory.FusionDirectoryTransportStartup jersey
+ * </pre>
+ */
+final class FusionDirectoryTransportStartup {
+
+	private FusionDirectoryTransportStartup() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		String client = args.length > 0 ? args[0] : "jdk";
+		try (FakeFusionDirectory server = new FakeFusionDirectory(
+				request -> FakeFusionDirectory.ok("{\"uid=jdoe,dc=example,dc=com\":\"jdoe\"}"))) {
+			long serverStarted = ManagementFactory.getRuntimeMXBean().getUptime();
+			ServiceSettings settings = FakeFusionDirectory.settings();
+			settings.getTransport().setClient(client);
+			FusionDirectoryDao dao = server.newDao(settings);
+			AtomicInteger listed = new AtomicInteger();
+			dao.getList("USER", Optional.empty(), Optional.of("uid"), Optional.empty(),
+					(dn, pivot) -> listed.incrementAndGet());
+			long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+			System.out.println(String.format("%s: %d objects listed %d ms after the JVM start (%d ms after the "
+					+ "test server start), %s", client, listed.get(), uptime, uptime - serverStarted, getMemory()));
+			dao.close();
+		}
+	}
+
+	private static String getMemory() throws IOException {
+		StringBuilder memory = new StringBuilder();
+		for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+			if (line.startsWith("VmRSS:") || line.startsWith("VmHWM:")) {
+				memory.append(line.replaceAll("\\s+", " ")).append(' ');
+			}
+		}
+		memory.append("metaspace ").append(ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(pool -> pool.getName().equals("Metaspace")).mapToLong(pool -> pool.getUsage().getUsed())
+				.sum() / 1024).append(" kB");
+		return memory.toString();
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FusionDirectoryWatermarkTest {
+
+	@TempDir
+	Path directory;
+
+	private Path file;
+
+	@BeforeEach
+	void setUp() {
+		file = directory.resolve("watermark.properties");
+	}
+
+	private Optional<String> stored() throws Exception {
+		return new FusionDirectoryWatermark(Optional.of(file.toString())).getTimestamp();
+	}
+
+	@Test
+	void pollIsStoredOnceItsChangesAreRead() throws Exception {
+		FusionDirectoryWatermark watermark = new FusionDirectoryWatermark(Optional.of(file.toString()));
+		FusionDirectoryWatermark.Run run = watermark.startRun(Optional.of("20240101000000Z"), OptionalInt.empty(), 2);
+		assertFalse(Files.exists(file));
+		run.read();
+		assertFalse(Files.exists(file));
+		run.read();
+		assertEquals(Optional.of("20240101000000Z"), stored());
+	}
+
+	@Test
+	void pollsAreStoredInOrder() throws Exception {
+		FusionDirectoryWatermark watermark = new FusionDirectoryWatermark(Optional.of(file.toString()));
+		FusionDirectoryWatermark.Run first = watermark.startRun(Optional.of("20240101000000Z"), OptionalInt.empty(), 1);
+		FusionDirectoryWatermark.Run second = watermark.startRun(Optional.of("20240102000000Z"), OptionalInt.empty(), 1);
+		second.read();
+		// The first poll changes are not read yet
+		assertFalse(Files.exists(file));
+		first.read();
+		assertEquals(Optional.of("20240102000000Z"), stored());
+	}
+
+	@Test
+	void fileIsOnlyWrittenWhenTheWatermarkMoved() throws Exception {
+		FusionDirectoryWatermark watermark = new FusionDirectoryWatermark(Optional.of(file.toString()));
+		watermark.startRun(Optional.of("20240101000000Z"), OptionalInt.empty(), 0);
+		assertTrue(Files.exists(file));
+		Files.delete(file);
+		watermark.startRun(Optional.of("20240101000000Z"), OptionalInt.empty(), 0);
+		assertFalse(Files.exists(file));
+		watermark.startRun(Optional.empty(), OptionalInt.empty(), 0);
+		assertFalse(Files.exists(file));
+	}
+
+	@Test
+	void failedReadKeepsTheWatermark() throws Exception {
+		FusionDirectoryWatermark watermark = new FusionDirectoryWatermark(Optional.of(file.toString()));
+		watermark.startRun(Optional.of("20240101000000Z"), OptionalInt.empty(), 0);
+		FusionDirectoryWatermark.Run failed = watermark.startRun(Optional.of("20240102000000Z"), OptionalInt.empty(), 2);
+		FusionDirectoryWatermark.Run next = watermark.startRun(Optional.of("20240103000000Z"), OptionalInt.empty(), 1);
+		failed.read();
+		failed.failed();
+		next.read();
+		failed.read();
+		assertEquals(Optional.of("20240101000000Z"), stored());
+		assertEquals(Optional.of("20240101000000Z"), watermark.getTimestamp());
+	}
+
+	@Test
+	void failedIncrementalRunIsRunAgain() throws Exception {
+		FusionDirectoryWatermark watermark = new FusionDirectoryWatermark(Optional.of(file.toString()));
+		watermark.startRun(Optional.of("20240101000000Z"), OptionalInt.of(0), 0);
+
+		// The first incremental run cannot read one of its objects
+		watermark.abandonRuns();
+		FusionDirectoryWatermark.Run failed = watermark.startRun(Optional.of("20240102000000Z"),
+				OptionalInt.of(watermark.getIncrementalRuns() + 1), 2);
+		failed.read();
+		failed.failed();
+		FusionDirectoryWatermark restarted = new FusionDirectoryWatermark(Optional.of(file.toString()));
+		assertEquals(Optional.of("20240101000000Z"), restarted.getTimestamp());
+		assertEquals(0, restarted.getIncrementalRuns());
+
+		// The next run lists the same objects again and reads them
+		restarted.abandonRuns();
+		FusionDirectoryWatermark.Run rerun = restarted.startRun(Optional.of("20240102000000Z"),
+				OptionalInt.of(restarted.getIncrementalRuns() + 1), 2);
+		rerun.read();
+		rerun.read();
+		FusionDirectoryWatermark stored = new FusionDirectoryWatermark(Optional.of(file.toString()));
+		assertEquals(Optional.of("20240102000000Z"), stored.getTimestamp());
+		assertEquals(1, stored.getIncrementalRuns());
+	}
+
+	@Test
+	void interruptedRunIsNotStored() throws Exception {
+		FusionDirectoryWatermark watermark = new FusionDirectoryWatermark(Optional.of(file.toString()));
+		watermark.startRun(Optional.of("20240101000000Z"), OptionalInt.of(0), 0);
+		watermark.startRun(Optional.of("20240102000000Z"), OptionalInt.of(1), 3).read();
+		FusionDirectoryWatermark restarted = new FusionDirectoryWatermark(Optional.of(file.toString()));
+		assertEquals(Optional.of("20240101000000Z"), restarted.getTimestamp());
+		assertEquals(0, restarted.getIncrementalRuns());
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2020 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2020 LSC Project
+ *         Soisik Froger <soisik.froger@worteks.com>
+ ****************************************************************************
+ */
+package org.lsc.plugins.connectors.fusiondirectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.lsc.LscModificationType;
+import org.lsc.LscModifications;
+import org.lsc.exception.LscServiceException;
+
+class FusionDirectoryWritePipelineTest {
+
+	private static LscModifications modifications(String mainIdentifier) {
+		LscModifications lm = new LscModifications(LscModificationType.UPDATE_OBJECT);
+		lm.setMainIdentifer(mainIdentifier);
+		return lm;
+	}
+
+	private static void pause(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	void writesOfAnIdentifierAreAppliedInOrder() throws Exception {
+		List<String> applied = Collections.synchronizedList(new ArrayList<>());
+		FusionDirectoryWritePipeline pipeline = new FusionDirectoryWritePipeline(4, 10, lm -> {
+			applied.add(lm.getMainIdentifier());
+			pause(1);
+			return true;
+		});
+		for (int i = 0; i < 20; i++) {
+			pipeline.submit(modifications("jdoe"));
+			pipeline.submit(modifications("user" + i));
+		}
+		assertTrue(pipeline.flush().isEmpty());
+		assertEquals(40, applied.size());
+		assertEquals(20, Collections.frequency(applied, "jdoe"));
+		pipeline.close();
+	}
+
+	@Test
+	void failuresAreReportedByFlushOnly() throws Exception {
+		FusionDirectoryWritePipeline pipeline = new FusionDirectoryWritePipeline(2, 10,
+				lm -> !"broken".equals(lm.getMainIdentifier()));
+		pipeline.submit(modifications("broken"));
+		pipeline.await("broken");
+		// A later write of another object is not failed by the earlier one
+		pipeline.submit(modifications("jdoe"));
+		assertEquals(List.of("broken"), pipeline.flush());
+		assertTrue(pipeline.flush().isEmpty());
+		pipeline.close();
+	}
+
+	@Test
+	void closeAppliesPendingWritesAndStopsWriters() throws Exception {
+		List<String> applied = Collections.synchronizedList(new ArrayList<>());
+		FusionDirectoryWritePipeline pipeline = new FusionDirectoryWritePipeline(2, 100, lm -> {
+			pause(2);
+			if ("broken".equals(lm.getMainIdentifier())) {
+				throw new LscServiceException("Rejected");
+			}
+			applied.add(lm.getMainIdentifier());
+			return true;
+		});
+		for (int i = 0; i < 20; i++) {
+			pipeline.submit(modifications("user" + i));
+		}
+		pipeline.submit(modifications("broken"));
+		assertEquals(List.of("broken"), pipeline.close());
+		assertEquals(20, applied.size());
+		assertThrows(LscServiceException.class, () -> pipeline.submit(modifications("jdoe")));
+		assertTrue(pipeline.close().isEmpty());
+		assertFalse(applied.contains("jdoe"));
+	}
+}